@@ -0,0 +1,121 @@
+package benchmarks;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.Server;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.PluginManager;
+import org.jetbrains.annotations.NotNull;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+/**
+ * Minimal Bukkit stand-ins, so the benchmarks run without a server.
+ * <p>
+ * Stubs are dynamic proxies answering a few methods with fixed values.
+ * Every other method returns null, false or zero, nothing is ever simulated.
+ * </p>
+ */
+final class BukkitStubs {
+    private static final Logger LOGGER = Logger.getLogger("Plus-Benchmark");
+
+    private BukkitStubs() {
+    }
+
+    /**
+     * Installs a stub server, once per JVM.
+     * The field is set directly, since {@link Bukkit#setServer(Server)} needs the build info of a real server.
+     */
+    static synchronized void installServer() {
+        if (Bukkit.getServer() != null) {
+            return;
+        }
+        Server server = stub(Server.class, Map.of(
+            "getLogger", LOGGER,
+            "getName", "Stub",
+            "getVersion", "benchmark",
+            "getBukkitVersion", "benchmark",
+            "getPluginManager", stub(PluginManager.class, Map.of()),
+            "isPrimaryThread", true
+        ));
+        try {
+            Field field = Bukkit.class.getDeclaredField("server");
+            field.setAccessible(true);
+            field.set(null, server);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Could not install the stub server", e);
+        }
+    }
+
+    /**
+     * Creates a player with the given id.
+     *
+     * @param uuid The id.
+     * @return The player.
+     */
+    static @NotNull Player player(@NotNull UUID uuid) {
+        return stub(Player.class, Map.of("getUniqueId", uuid, "getName", "Player"));
+    }
+
+    /**
+     * Creates an entity standing at the given location.
+     *
+     * @param location The location.
+     * @return The entity.
+     */
+    static @NotNull Entity entity(@NotNull Location location) {
+        return stub(Entity.class, Map.of("getLocation", location));
+    }
+
+    /**
+     * Creates a stub of the given interface.
+     *
+     * @param type    The interface.
+     * @param answers Return values by method name.
+     * @param <T>     Type of the interface.
+     * @return The stub.
+     */
+    static <T> @NotNull T stub(@NotNull Class<T> type, @NotNull Map<String, Object> answers) {
+        Object proxy = Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (self, method, args) -> {
+            switch (method.getName()) {
+                case "equals":
+                    return self == args[0];
+                case "hashCode":
+                    return System.identityHashCode(self);
+                case "toString":
+                    return type.getSimpleName() + "Stub";
+                default:
+                    break;
+            }
+            Object answer = answers.get(method.getName());
+            if (answer != null) {
+                return answer;
+            }
+            Class<?> returnType = method.getReturnType();
+            if (returnType == boolean.class) {
+                return false;
+            } else if (returnType == char.class) {
+                return (char) 0;
+            } else if (returnType == float.class) {
+                return 0f;
+            } else if (returnType == double.class) {
+                return 0d;
+            } else if (returnType == long.class) {
+                return 0L;
+            } else if (returnType == byte.class) {
+                return (byte) 0;
+            } else if (returnType == short.class) {
+                return (short) 0;
+            } else if (returnType.isPrimitive() && returnType != void.class) {
+                return 0;
+            }
+            return null;
+        });
+        return type.cast(proxy);
+    }
+}
@@ -0,0 +1,141 @@
+package benchmarks;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.marcusslover.plus.lib.container.codec.ContainerCodec;
+import com.marcusslover.plus.lib.container.storage.AtomicFiles;
+import com.marcusslover.plus.lib.container.type.MapContainer;
+import org.jetbrains.annotations.NotNull;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Serialization and file I/O of the containers.
+ * The {@code legacy*} benchmarks are the previous string based pipeline, compare their
+ * {@code gc.alloc.rate.norm} with the current codecs.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ContainerIoBenchmark {
+    private final Gson gson = new GsonBuilder().setPrettyPrinting().serializeNulls().create();
+    private PlayerData value;
+    private byte[] pretty;
+    private Path folder;
+    private BenchmarkContainer container;
+    private int round = 0;
+
+    @Setup
+    public void setup() throws IOException {
+        this.value = PlayerData.sample(1);
+        this.pretty = ContainerCodec.JSON.encode(this.gson, this.value);
+        this.folder = Files.createTempDirectory("plus-bench");
+        this.container = new BenchmarkContainer();
+        this.container.setParentFolder(this.folder.toFile());
+        for (int i = 0; i < 256; i++) {
+            this.container.storeLocally("player-" + i, PlayerData.sample(i));
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(this.folder)) {
+            for (Path path : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    @Benchmark
+    public byte[] encodePretty() {
+        return ContainerCodec.JSON.encode(this.gson, this.value);
+    }
+
+    @Benchmark
+    public byte[] encodeMinified() {
+        return ContainerCodec.MINIFIED_JSON.encode(this.gson, this.value);
+    }
+
+    @Benchmark
+    public byte[] legacyEncodePretty() {
+        return this.gson.toJson(this.value).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public PlayerData decode() {
+        return ContainerCodec.JSON.decode(this.gson, this.pretty, PlayerData.class);
+    }
+
+    @Benchmark
+    public PlayerData legacyDecode() throws IOException {
+        try (Reader reader = new InputStreamReader(new ByteArrayInputStream(this.pretty), StandardCharsets.UTF_8)) {
+            return this.gson.fromJson(reader, PlayerData.class);
+        }
+    }
+
+    @Benchmark
+    public void writeFile() throws IOException {
+        AtomicFiles.write(this.folder.resolve("single.json"), this.pretty, false);
+    }
+
+    /**
+     * Bulk save of 256 changed objects, the objects change every round so nothing is skipped.
+     */
+    @Benchmark
+    @OperationsPerInvocation(256)
+    public void saveBatch() {
+        int round = ++this.round;
+        Map<String, PlayerData> batch = new HashMap<>();
+        this.container.getCache().forEach((key, data) -> {
+            data.coins = round;
+            batch.put(key, data);
+        });
+        this.container.writeData(batch);
+    }
+
+    public static class PlayerData {
+        private String name;
+        private long coins;
+        private int level;
+        private double experience;
+        private boolean online;
+        private List<String> friends;
+        private Map<String, Integer> statistics;
+
+        static @NotNull PlayerData sample(int seed) {
+            PlayerData data = new PlayerData();
+            data.name = "Player" + seed;
+            data.coins = seed * 1000L;
+            data.level = seed % 100;
+            data.experience = seed / 7.0;
+            data.friends = new ArrayList<>(List.of("Alice", "Bob", "Charlie"));
+            data.statistics = new HashMap<>(Map.of("kills", seed, "deaths", seed / 2, "wins", seed / 3));
+            return data;
+        }
+    }
+
+    private static final class BenchmarkContainer extends MapContainer<String, PlayerData> {
+        private BenchmarkContainer() {
+            super(TRANSFORMER, COMPOSER, PlayerData.class);
+        }
+
+        @Override
+        protected @NotNull PlayerData emptyValue(@NotNull String key) {
+            return new PlayerData();
+        }
+    }
+}
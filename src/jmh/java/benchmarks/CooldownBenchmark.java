@@ -0,0 +1,39 @@
+package benchmarks;
+
+import com.marcusslover.plus.lib.cooldown.CooldownManager;
+import org.bukkit.entity.Player;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cooldown checks, usually done for every interaction of a player.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CooldownBenchmark {
+    private Player player;
+
+    @Setup
+    public void setup() {
+        this.player = BukkitStubs.player(UUID.randomUUID());
+        CooldownManager.check(this.player, "ability", 60_000); // starts the cooldown
+    }
+
+    @Benchmark
+    public boolean checkOnCooldown() {
+        return CooldownManager.check(this.player, "ability", 60_000);
+    }
+
+    @Benchmark
+    public boolean checkExpired() {
+        return CooldownManager.check(this.player, "click", 0);
+    }
+
+    @Benchmark
+    public boolean checkGlobal() {
+        return CooldownManager.check(null, "broadcast", 60_000);
+    }
+}
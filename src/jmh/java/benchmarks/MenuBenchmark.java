@@ -0,0 +1,78 @@
+package benchmarks;
+
+import com.marcusslover.plus.lib.item.Button;
+import com.marcusslover.plus.lib.item.Canvas;
+import com.marcusslover.plus.lib.item.Menu;
+import org.bukkit.entity.Player;
+import org.jetbrains.annotations.NotNull;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Slot resolution of clicks, as done by {@code MenuManager#onClick}, and the slots of button areas.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MenuBenchmark {
+    private Canvas canvas;
+    private Button area;
+    private int slot = 0;
+
+    @Setup
+    public void setup() {
+        BukkitStubs.installServer();
+        this.canvas = new Canvas(6, new EmptyMenu());
+        this.canvas.button(Button.create(0, 8, true)); // border on top
+        for (int slot = 9; slot < 54; slot++) { // a full chest of single slot buttons
+            this.canvas.button(Button.create(slot));
+        }
+        this.area = Button.create(1, 1, 7, 4);
+    }
+
+    /**
+     * Clicks every slot in turn, each click is a lookup in the slot table of the canvas.
+     */
+    @Benchmark
+    public Button resolveClick() {
+        this.slot = (this.slot + 1) % 54;
+        return this.canvas.buttonAt(this.slot);
+    }
+
+    @Benchmark
+    public Button resolveLastSlot() {
+        return this.canvas.buttonAt(53);
+    }
+
+    /**
+     * First click after the layout changed, the slot table is built again.
+     */
+    @Benchmark
+    public Button resolveAfterChange() {
+        this.area.slot(1, 1, 7, 4);
+        return this.canvas.buttonAt(53);
+    }
+
+    @Benchmark
+    public Button resolveMiss() {
+        return this.canvas.buttonAt(60); // player inventory
+    }
+
+    @Benchmark
+    public Set<Integer> areaSlots() {
+        return this.area.detectableArea().slots();
+    }
+
+    @Benchmark
+    public boolean areaWithin() {
+        return this.area.within(40);
+    }
+
+    private static final class EmptyMenu extends Menu {
+        @Override
+        public void open(@NotNull Canvas ctx, @NotNull Player player) {
+        }
+    }
+}
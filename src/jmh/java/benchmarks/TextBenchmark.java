@@ -0,0 +1,33 @@
+package benchmarks;
+
+import com.marcusslover.plus.lib.text.ColorUtil;
+import com.marcusslover.plus.lib.text.Text;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing of legacy and hex colored text, done for every item name and lore line.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TextBenchmark {
+    @Param({"&aPlain &lgreen", "&#ff0000Red &#00ff00Green &#0000ffBlue"})
+    public String input;
+
+    @Benchmark
+    public Text textOf() {
+        return Text.of(this.input);
+    }
+
+    @Benchmark
+    public String hex() {
+        return ColorUtil.hex(this.input);
+    }
+
+    @Benchmark
+    public String color() {
+        return ColorUtil.color(this.input);
+    }
+}
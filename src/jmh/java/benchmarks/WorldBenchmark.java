@@ -0,0 +1,70 @@
+package benchmarks;
+
+import com.marcusslover.plus.lib.region.Region;
+import com.marcusslover.plus.lib.world.WorldPoint;
+import org.bukkit.Location;
+import org.bukkit.entity.Entity;
+import org.bukkit.util.Vector;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Region checks and point math, done for moving players.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class WorldBenchmark {
+    private Region region;
+    private Vector inside;
+    private Location location;
+    private Entity entity;
+    private WorldPoint a;
+    private WorldPoint b;
+
+    @Setup
+    public void setup() {
+        this.region = Region.of(-100, 0, -100, 100, 256, 100);
+        this.inside = new Vector(12.5, 64, -40.25);
+        this.location = new Location(null, 150, 64, 20); // outside on x only
+        this.entity = BukkitStubs.entity(new Location(null, 12.5, 64, -40.25));
+        this.a = WorldPoint.of(12.5, 64, -40.25, 90f, 0f);
+        this.b = WorldPoint.of(-300, 70, 1200.75);
+    }
+
+    @Benchmark
+    public boolean regionWithinVector() {
+        return this.region.within(this.inside);
+    }
+
+    @Benchmark
+    public boolean regionWithinLocationExcludeY() {
+        return this.region.within(this.location, true);
+    }
+
+    @Benchmark
+    public boolean regionWithinEntity() {
+        return this.region.within(this.entity);
+    }
+
+    @Benchmark
+    public double pointDistance() {
+        return this.a.distance(this.b);
+    }
+
+    @Benchmark
+    public WorldPoint pointMath() {
+        return this.a.clone().add(this.b).multiply(0.5).subtract(1, 0, 1); // the math is in place
+    }
+
+    @Benchmark
+    public WorldPoint pointMidpoint() {
+        return this.a.midpoint(this.b);
+    }
+
+    @Benchmark
+    public boolean pointBetween() {
+        return this.a.isBetween(this.b, WorldPoint.of(100, 100, 100));
+    }
+}
@@ -2,13 +2,42 @@ package com.marcusslover.plus.lib.container;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.marcusslover.plus.lib.container.codec.ContainerCodec;
+import com.marcusslover.plus.lib.container.extra.Migration;
+import com.marcusslover.plus.lib.container.extra.FlushStats;
+import com.marcusslover.plus.lib.container.metrics.ContainerMetrics;
+import com.marcusslover.plus.lib.container.storage.ContainerStorage;
+import com.marcusslover.plus.lib.container.storage.FileStorage;
 import com.marcusslover.plus.lib.container.type.MapContainer;
 import com.marcusslover.plus.lib.container.type.SingleContainer;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.Getter;
+import lombok.Setter;
+import org.bukkit.Bukkit;
 import org.bukkit.plugin.Plugin;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
 
 /**
  * Abstract container that represents a parent of files, similar to a folder.
@@ -19,8 +48,28 @@ import java.io.File;
 @Data
 public abstract class AbstractContainer<K> {
     protected static final Gson DEFAULT_GSON = new GsonBuilder().setPrettyPrinting().serializeNulls().create();
+    /*Extension of the files written before codecs existed*/
+    protected static final String LEGACY_EXTENSION = ".json";
+    /*Field holding the schema version of stored objects, see #registerMigration*/
+    public static final String VERSION_FIELD = "__version";
     protected File parentFolder;
     protected Plugin plugin;
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private volatile @Nullable ExecutorService executor = null;
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private volatile boolean executorClosed = false; // set by shutdownExecutor, no new executor is created
+    @Setter(AccessLevel.NONE)
+    protected volatile @Nullable ContainerMetrics metrics = null; // null while disabled
+    protected final FlushStats flushStats = new FlushStats(); // always counted, also read by the metrics
+    protected @Nullable ContainerCodec codec = null; // null for the default codec
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private final List<Migration> migrations = new CopyOnWriteArrayList<>(); // index is the version it upgrades from
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    protected volatile @Nullable ContainerStorage storage = null; // created on first use
 
     /**
      * Gets the Gson instance.
@@ -32,6 +81,231 @@ public abstract class AbstractContainer<K> {
         return DEFAULT_GSON;
     }
 
+    /**
+     * Gets the codec used to write the files.
+     * By default, it is {@link ContainerCodec#JSON} which respects {@link #getGson()},
+     * unless a different codec was set, for example by {@link com.marcusslover.plus.lib.container.extra.Compressed}.
+     * <p>
+     * Files in the extension of another built-in codec, see {@link ContainerCodec#EXTENSIONS},
+     * stay readable: their content is detected, and they are migrated to the extension
+     * of this codec when they are read. Switching the codec never loses stored objects.
+     * </p>
+     *
+     * @return The codec.
+     */
+    protected @NotNull ContainerCodec getCodec() {
+        ContainerCodec codec = this.codec;
+        return codec != null ? codec : ContainerCodec.JSON;
+    }
+
+    /**
+     * Gets the extensions of all files this container reads, the one of the current codec first.
+     *
+     * @return The extensions.
+     */
+    protected @NotNull List<String> storedExtensions() {
+        List<String> extensions = new ArrayList<>();
+        extensions.add(this.getCodec().extension());
+        extensions.addAll(this.foreignExtensions());
+        return extensions;
+    }
+
+    /**
+     * Gets the extensions of files written by other built-in codecs.
+     *
+     * @return The extensions, without the one of the current codec.
+     */
+    protected @NotNull List<String> foreignExtensions() {
+        List<String> extensions = new ArrayList<>(ContainerCodec.EXTENSIONS);
+        extensions.remove(this.getCodec().extension());
+        return extensions;
+    }
+
+    /**
+     * Removes the extension from the name of a stored file.
+     *
+     * @param fileName Name of the file.
+     * @return The name without the extension, or null if no known codec writes this extension.
+     */
+    protected @Nullable String stripExtension(@NotNull String fileName) {
+        String current = this.getCodec().extension();
+        if (fileName.endsWith(current)) {
+            return fileName.substring(0, fileName.length() - current.length());
+        }
+        for (String extension : ContainerCodec.EXTENSIONS) {
+            if (fileName.endsWith(extension)) {
+                return fileName.substring(0, fileName.length() - extension.length());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Gets the storage of this container, creating it on first use.
+     *
+     * @return The storage.
+     */
+    public @NotNull ContainerStorage getStorage() {
+        ContainerStorage storage = this.storage;
+        if (storage == null) {
+            synchronized (this) {
+                storage = this.storage;
+                if (storage == null) {
+                    try {
+                        storage = this.createStorage();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    this.storage = storage;
+                }
+            }
+        }
+        return storage;
+    }
+
+    /**
+     * Replaces the storage of this container.
+     * <p>
+     * Should be called before anything is loaded, the previous storage is closed.
+     * </p>
+     *
+     * @param storage The new storage.
+     */
+    public synchronized void setStorage(@NotNull ContainerStorage storage) {
+        this.closeStorage();
+        this.storage = storage;
+    }
+
+    /**
+     * Creates the storage of this container.
+     * <p>
+     * By default, every object is kept in its own file in the parent folder.
+     * Override to use a different backend, for example
+     * {@link com.marcusslover.plus.lib.container.storage.SegmentedStorage} or
+     * {@link com.marcusslover.plus.lib.container.storage.InMemoryStorage}.
+     * </p>
+     *
+     * @return The storage.
+     * @throws IOException If the storage could not be opened.
+     */
+    protected @NotNull ContainerStorage createStorage() throws IOException {
+        return new FileStorage(this.parentFolder.toPath());
+    }
+
+    /**
+     * Closes the storage of this container.
+     * The storage is opened again on next use.
+     */
+    public synchronized void closeStorage() {
+        ContainerStorage storage = this.storage;
+        if (storage == null) {
+            return;
+        }
+        this.storage = null;
+        try {
+            storage.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Serializes the object into the content of its file.
+     *
+     * @param value The object.
+     * @return The serialized content.
+     */
+    protected byte @NotNull [] serialize(@NotNull Object value) {
+        int version = this.getSchemaVersion();
+        if (version == 0) { // unversioned files stay exactly as they were
+            return this.getCodec().encode(this.getGson(), value);
+        }
+        JsonElement tree = this.getGson().toJsonTree(value);
+        if (tree.isJsonObject()) {
+            JsonObject versioned = new JsonObject();
+            versioned.addProperty(VERSION_FIELD, version); // first, so projections find it right away
+            tree.getAsJsonObject().entrySet().forEach(entry -> versioned.add(entry.getKey(), entry.getValue()));
+            tree = versioned;
+        }
+        return this.getCodec().encode(this.getGson(), tree);
+    }
+
+    /**
+     * Deserializes the content of a file.
+     * The codec is detected from the content.
+     *
+     * @param data The content.
+     * @param type Type of the object.
+     * @param <T>  Type of the object.
+     * @return The object or null if the content represents null.
+     */
+    protected <T> @Nullable T deserialize(byte @NotNull [] data, @NotNull Class<T> type) {
+        ContainerCodec codec = ContainerCodec.detect(data);
+        if (this.migrations.isEmpty()) {
+            return codec.decode(this.getGson(), data, type);
+        }
+        JsonElement tree = codec.decode(this.getGson(), data, JsonElement.class);
+        if (tree != null && tree.isJsonObject()) {
+            this.upgrade(tree.getAsJsonObject());
+        }
+        return this.getGson().fromJson(tree, type);
+    }
+
+    /**
+     * Registers the migration from the given schema version to the next one.
+     * <p>
+     * Migrations have to be registered in order, starting at version 0 which are all files
+     * written before the first migration. The schema version of the container is the amount of
+     * registered migrations, and every written object stores it in the {@link #VERSION_FIELD}.
+     * </p>
+     * <p>
+     * Objects are migrated lazily when they are read, and written back with the next save.
+     * Map containers can also migrate all files at once, see {@link MapContainer#migrateAll(int)}.
+     * </p>
+     *
+     * @param fromVersion The version the migration upgrades from.
+     * @param migration   The migration.
+     * @throws IllegalArgumentException If the migration is not the next one.
+     */
+    public void registerMigration(int fromVersion, @NotNull Migration migration) {
+        synchronized (this.migrations) {
+            if (fromVersion != this.migrations.size()) {
+                throw new IllegalArgumentException("Expected the migration from version " + this.migrations.size() + ", got " + fromVersion);
+            }
+            this.migrations.add(migration);
+        }
+    }
+
+    /**
+     * Gets the version of the objects written by this container.
+     *
+     * @return The amount of registered migrations.
+     */
+    public int getSchemaVersion() {
+        return this.migrations.size();
+    }
+
+    /**
+     * Migrates the JSON tree of a stored object to the current schema version.
+     *
+     * @param object The object, upgraded in place.
+     * @return True if any migration was applied.
+     * @throws IllegalStateException If the object was written by a newer schema version.
+     */
+    protected boolean upgrade(@NotNull JsonObject object) {
+        int current = this.getSchemaVersion();
+        JsonElement stored = object.get(VERSION_FIELD);
+        int version = stored == null || stored.isJsonNull() ? 0 : stored.getAsInt();
+        if (version > current) { // never lose fields of a newer deploy
+            throw new IllegalStateException("Object of schema version " + version + " is newer than " + this.getClass().getSimpleName() + " (" + current + ")");
+        }
+        for (int i = version; i < current; i++) {
+            this.migrations.get(i).migrate(object);
+        }
+        object.addProperty(VERSION_FIELD, current);
+        return version < current;
+    }
+
     /**
      * Push the updated object to the cache and save it to the file.
      *
@@ -44,5 +318,206 @@ public abstract class AbstractContainer<K> {
      * Look at {@link com.marcusslover.plus.lib.container.extra.InitialLoading} for more information.
      */
     public abstract void loadAllData();
-}
 
+    /**
+     * Same as {@link #update(Object)}, but runs on the executor of this container.
+     *
+     * @param key Key of the object.
+     * @return Future completed once the object is saved.
+     */
+    public @NotNull CompletableFuture<Void> updateAsync(@NotNull K key) {
+        return CompletableFuture.runAsync(() -> this.update(key), this.getExecutor());
+    }
+
+    /**
+     * Same as {@link #loadAllData()}, but runs on the executor of this container.
+     *
+     * @return Future completed once all the data is loaded.
+     */
+    public @NotNull CompletableFuture<Void> loadAllDataAsync() {
+        return CompletableFuture.runAsync(this::loadAllData, this.getExecutor());
+    }
+
+    /**
+     * Continues the given future on the main server thread.
+     * <p>
+     * Use it to touch the Bukkit API with the result of an async operation, for example:
+     * {@code container.sync(container.loadDataAsync(uuid)).thenAccept(data -> ...)}.
+     * </p>
+     *
+     * @param future The future.
+     * @param <T>    Type of the result.
+     * @return Future completed on the main thread.
+     */
+    public <T> @NotNull CompletableFuture<T> sync(@NotNull CompletableFuture<T> future) {
+        return future.thenApplyAsync(Function.identity(), this.mainThread());
+    }
+
+    /**
+     * Gets an executor that runs the tasks on the main server thread.
+     * Tasks submitted from the main thread run immediately.
+     *
+     * @return The executor.
+     */
+    public @NotNull Executor mainThread() {
+        return runnable -> {
+            if (Bukkit.isPrimaryThread()) {
+                runnable.run();
+            } else {
+                Bukkit.getScheduler().runTask(this.plugin, runnable);
+            }
+        };
+    }
+
+    /**
+     * Gets the executor used by the async operations of this container.
+     * It is created lazily by {@link #createExecutor()}.
+     * Once {@link #shutdownExecutor()} was called, the executor rejects every task.
+     *
+     * @return The executor.
+     * @throws RejectedExecutionException If the executor was shut down before it was ever created.
+     */
+    public @NotNull ExecutorService getExecutor() {
+        ExecutorService executor = this.executor;
+        if (executor == null) {
+            synchronized (this) {
+                executor = this.executor;
+                if (executor == null) {
+                    if (this.executorClosed) {
+                        throw new RejectedExecutionException("The executor of " + this.getClass().getSimpleName() + " is shut down");
+                    }
+                    executor = this.createExecutor();
+                    this.executor = executor;
+                }
+            }
+        }
+        return executor;
+    }
+
+    /**
+     * Creates the executor used by the async operations of this container.
+     * By default, it is a cached pool of daemon threads or virtual threads, see {@link #useVirtualThreads()}.
+     *
+     * @return The executor.
+     */
+    protected @NotNull ExecutorService createExecutor() {
+        if (this.useVirtualThreads()) {
+            return Executors.newVirtualThreadPerTaskExecutor();
+        }
+        String name = "Plus-Container-" + this.getClass().getSimpleName();
+        return Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Whether the async operations of this container should run on virtual threads.
+     * By default, it is false.
+     *
+     * @return True to use virtual threads.
+     */
+    protected boolean useVirtualThreads() {
+        return false;
+    }
+
+    /**
+     * Shuts down the executor of this container and waits for the submitted operations to finish.
+     * Async operations are rejected from now on, a shut down executor is never created again.
+     */
+    public synchronized void shutdownExecutor() {
+        this.executorClosed = true;
+        ExecutorService executor = this.executor;
+        if (executor == null) {
+            return;
+        }
+        executor.shutdown(); // kept, so later tasks are rejected
+        try {
+            if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+                this.plugin.getLogger().warning("Async operations did not finish in time: " + this.getClass().getSimpleName());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Enables the metrics of this container.
+     * Does nothing if they are already enabled.
+     *
+     * @return The metrics.
+     */
+    public synchronized @NotNull ContainerMetrics enableMetrics() {
+        ContainerMetrics metrics = this.metrics;
+        if (metrics == null) {
+            metrics = new ContainerMetrics();
+            this.metrics = metrics;
+        }
+        return metrics;
+    }
+
+    /**
+     * Disables the metrics of this container and drops everything recorded so far.
+     */
+    public synchronized void disableMetrics() {
+        this.metrics = null;
+    }
+
+    /**
+     * Takes a snapshot of the metrics of this container.
+     * Written and skipped objects are taken from {@link #getFlushStats()}.
+     *
+     * @return The snapshot or null if the metrics are disabled.
+     */
+    public @Nullable ContainerMetrics.Snapshot metricsSnapshot() {
+        ContainerMetrics metrics = this.metrics;
+        return metrics == null ? null : metrics.snapshot(this.cachedEntries(), this.flushStats);
+    }
+
+    /**
+     * Gets the amount of objects currently in the cache, reported by the metrics.
+     *
+     * @return The amount of objects.
+     */
+    protected long cachedEntries() {
+        return 0;
+    }
+
+    /**
+     * Serializes the loaded objects for a snapshot, see {@link ContainerManager#snapshot(Path)}.
+     * <p>
+     * Called on the main thread, so all objects are captured at the same point in time.
+     * The result does not share any state with the container.
+     * </p>
+     *
+     * @return Content by file name.
+     */
+    public @NotNull Map<String, byte[]> captureSnapshot() {
+        return Collections.emptyMap();
+    }
+
+    /**
+     * Reads every entry of the storage for a snapshot.
+     * <p>
+     * Entries are read one by one while the container keeps working, nothing is locked.
+     * </p>
+     *
+     * @param action Called with the name and the content of each entry.
+     * @throws IOException If the entries could not be read.
+     */
+    public void exportStored(@NotNull BiConsumer<String, byte[]> action) throws IOException {
+        ContainerStorage storage = this.getStorage();
+        storage.forEachName(name -> {
+            byte[] data;
+            try {
+                data = storage.read(name);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            if (data != null) { // deleted in the meantime
+                action.accept(name, data);
+            }
+        });
+    }
+}
@@ -0,0 +1,106 @@
+package com.marcusslover.plus.lib.container;
+
+import com.marcusslover.plus.lib.container.extra.AutoSave;
+import com.marcusslover.plus.lib.container.type.MapContainer;
+import com.marcusslover.plus.lib.container.type.SingleContainer;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+/**
+ * Task that runs every tick and saves the containers annotated with {@link AutoSave}.
+ * The save of a map container is spread over as many ticks as its budget requires.
+ */
+final class AutoSaveTask implements Runnable {
+    private final @NotNull List<Entry<?>> entries = new ArrayList<>();
+
+    /**
+     * Adds a container to the task.
+     *
+     * @param container The container.
+     * @param autoSave  The settings of the container.
+     */
+    void add(@NotNull AbstractContainer<?> container, @NotNull AutoSave autoSave) {
+        this.entries.add(new Entry<>(container, autoSave));
+    }
+
+    /**
+     * Checks if there is any container to save.
+     *
+     * @return True if there is nothing to do.
+     */
+    boolean isEmpty() {
+        return this.entries.isEmpty();
+    }
+
+    @Override
+    public void run() {
+        long now = System.nanoTime();
+        for (Entry<?> entry : this.entries) {
+            try {
+                entry.tick(now);
+            } catch (Exception e) {
+                entry.keys = null; // try again next interval
+                entry.container.getPlugin().getLogger().log(Level.SEVERE, "Could not autosave " + entry.container.getClass().getSimpleName(), e);
+            }
+        }
+    }
+
+    /**
+     * Progress of the autosave of one container.
+     *
+     * @param <K> Key type.
+     */
+    private static final class Entry<K> {
+        private final @NotNull AbstractContainer<K> container;
+        private final long interval;
+        private final int keysPerTick;
+        private final long tickBudget;
+        private long nextSave;
+        private @Nullable Iterator<K> keys = null; // save in progress
+
+        private Entry(@NotNull AbstractContainer<K> container, @NotNull AutoSave autoSave) {
+            this.container = container;
+            this.interval = autoSave.unit().toNanos(autoSave.interval());
+            this.keysPerTick = autoSave.keysPerTick();
+            this.tickBudget = TimeUnit.MICROSECONDS.toNanos(autoSave.tickBudgetMicros());
+            this.nextSave = System.nanoTime() + this.interval;
+        }
+
+        private void tick(long now) {
+            if (this.keys == null) {
+                if (now - this.nextSave < 0) {
+                    return;
+                }
+                this.nextSave = now + this.interval;
+                if (this.container instanceof SingleContainer<?> singleContainer) {
+                    saveSingle(singleContainer);
+                    return;
+                }
+                if (this.container instanceof MapContainer<K, ?> mapContainer) {
+                    this.keys = new ArrayList<>(mapContainer.getCache().keySet()).iterator(); // snapshot
+                }
+            }
+            if (this.keys == null || !(this.container instanceof MapContainer<K, ?> mapContainer)) {
+                return;
+            }
+            long deadline = this.tickBudget > 0 ? now + this.tickBudget : Long.MAX_VALUE;
+            mapContainer.autosave(this.keys, this.keysPerTick, deadline);
+            if (!this.keys.hasNext()) {
+                this.keys = null; // done until the next interval
+            }
+        }
+
+        private static <V> void saveSingle(@NotNull SingleContainer<V> container) {
+            container.autosave().exceptionally(e -> { // serialized now, written without unloading
+                container.getPlugin().getLogger().log(Level.SEVERE, "Could not autosave " + container.getClass().getSimpleName(), e);
+                return null;
+            });
+        }
+    }
+}
@@ -1,17 +1,46 @@
 package com.marcusslover.plus.lib.container;
 
+import com.marcusslover.plus.lib.container.codec.CompressedCodec;
+import com.marcusslover.plus.lib.container.codec.ContainerCodec;
+import com.marcusslover.plus.lib.container.extra.AutoSave;
+import com.marcusslover.plus.lib.container.extra.Compressed;
 import com.marcusslover.plus.lib.container.extra.InitialLoading;
+import com.marcusslover.plus.lib.container.extra.Journaled;
+import com.marcusslover.plus.lib.container.extra.Segmented;
+import com.marcusslover.plus.lib.container.extra.Sharded;
+import com.marcusslover.plus.lib.container.extra.WriteBehind;
+import com.marcusslover.plus.lib.container.metrics.ContainerMetrics;
+import com.marcusslover.plus.lib.container.storage.AtomicFiles;
+import com.marcusslover.plus.lib.container.storage.SegmentedStorage;
+import com.marcusslover.plus.lib.container.storage.ShardedFileStorage;
 import com.marcusslover.plus.lib.container.type.MapContainer;
 import com.marcusslover.plus.lib.container.type.SingleContainer;
 import lombok.Getter;
+import org.bukkit.Bukkit;
 import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
 import java.io.File;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Optional;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 /**
  * Manages all containers of the server.
@@ -19,6 +48,8 @@ import java.util.Optional;
 public class ContainerManager {
     @Getter
     private final @NotNull Map<String, AbstractContainer<?>> containerMap = new HashMap<>();
+    private @Nullable BukkitTask autoSaveTask = null;
+    private volatile @NotNull CompletableFuture<?> snapshotTask = CompletableFuture.completedFuture(null); // last export
 
     /**
      * Registers a new container.
@@ -32,6 +63,7 @@ public class ContainerManager {
 
     /**
      * Initializes all containers.
+     * Containers annotated with {@link InitialLoading} are loaded in parallel.
      *
      * @param plugin Plugin instance.
      */
@@ -50,6 +82,8 @@ public class ContainerManager {
         }
 
         /*Creates directories for all containers*/
+        Map<AbstractContainer<?>, InitialLoading> loading = new IdentityHashMap<>();
+        AutoSaveTask autoSave = new AutoSaveTask();
         for (String parent : this.containerMap.keySet()) {
             File containerFolder = new File(dataFolder, parent);
 
@@ -65,6 +99,44 @@ public class ContainerManager {
             container.setPlugin(plugin);
 
             /*Extra data settings*/
+            Segmented segmented = container.getClass().getAnnotation(Segmented.class);
+            Sharded sharded = container.getClass().getAnnotation(Sharded.class);
+            if ((segmented != null || sharded != null) && container instanceof MapContainer<?, ?> mapContainer) {
+                try {
+                    if (segmented != null) {
+                        mapContainer.setStorage(new SegmentedStorage(containerFolder.toPath(), segmented.segmentSize(), container.storedExtensions()));
+                    } else {
+                        mapContainer.setStorage(new ShardedFileStorage(containerFolder.toPath(), sharded.levels()));
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+
+            Journaled journaled = container.getClass().getAnnotation(Journaled.class);
+            if (journaled != null && container instanceof MapContainer<?, ?> mapContainer) {
+                mapContainer.openJournal(journaled.checkpointSize()); // replays the journal after a crash, before anything reads the files
+            }
+
+            Compressed compressed = container.getClass().getAnnotation(Compressed.class);
+            if (compressed != null) {
+                try {
+                    this.compress(container, compressed);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+
+            WriteBehind writeBehind = container.getClass().getAnnotation(WriteBehind.class);
+            if (writeBehind != null && container instanceof MapContainer<?, ?> mapContainer) {
+                mapContainer.enableWriteBehind(writeBehind.interval(), writeBehind.unit());
+            }
+
+            AutoSave autoSaveAnnotation = container.getClass().getAnnotation(AutoSave.class);
+            if (autoSaveAnnotation != null) {
+                autoSave.add(container, autoSaveAnnotation);
+            }
+
             InitialLoading initialLoading = this.getInitialLoadingAnnotation(container);
             if (initialLoading == null) {
                 continue;
@@ -72,17 +144,85 @@ public class ContainerManager {
             if (!initialLoading.value()) {
                 continue;
             }
+            loading.put(container, initialLoading);
+        }
+
+        /*Loads the data of all containers in parallel*/
+        long start = System.nanoTime();
+        if (loading.size() == 1) {
+            loading.forEach(this::load);
+        } else if (!loading.isEmpty()) {
+            ExecutorService executor = Executors.newFixedThreadPool(loading.size());
+            try {
+                List<Callable<Object>> tasks = new ArrayList<>();
+                loading.forEach((container, initialLoading) -> tasks.add(Executors.callable(() -> this.load(container, initialLoading))));
+                executor.invokeAll(tasks);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                executor.shutdown();
+            }
+        }
+        if (!loading.isEmpty()) {
+            long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            plugin.getLogger().info("Loaded " + loading.size() + " containers in " + millis + "ms");
+        }
+
+        /*Starts the autosave, it checks every tick if a container is due*/
+        if (!autoSave.isEmpty()) {
+            this.autoSaveTask = Bukkit.getScheduler().runTaskTimer(plugin, autoSave, 1L, 1L);
+        }
+    }
+
+    private void compress(@NotNull AbstractContainer<?> container, @NotNull Compressed compressed) throws IOException {
+        ContainerCodec inner = ContainerCodec.MINIFIED_JSON; // whitespace only costs compression time
+        if (!compressed.dictionary() || !(container instanceof MapContainer<?, ?> mapContainer)) {
+            container.setCodec(CompressedCodec.gzip(inner));
+            return;
+        }
+
+        /*Every dictionary ever used has to stay readable*/
+        Path folder = container.getParentFolder().toPath();
+        Path newest = null;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(folder, CompressedCodec.DICTIONARY_FILE_PREFIX + "*")) {
+            for (Path path : stream) {
+                CompressedCodec.registerDictionary(Files.readAllBytes(path));
+                if (newest == null || Files.getLastModifiedTime(path).compareTo(Files.getLastModifiedTime(newest)) > 0) {
+                    newest = path;
+                }
+            }
+        }
+
+        byte[] dictionary;
+        if (newest != null) {
+            dictionary = Files.readAllBytes(newest);
+        } else {
+            dictionary = CompressedCodec.trainDictionary(mapContainer.sampleContents(compressed.samples(), inner), compressed.dictionarySize());
+            if (dictionary.length == 0) { // nothing to learn from yet
+                container.setCodec(CompressedCodec.gzip(inner));
+                return;
+            }
+            String id = Integer.toHexString(CompressedCodec.dictionaryId(dictionary));
+            AtomicFiles.write(folder.resolve(CompressedCodec.DICTIONARY_FILE_PREFIX + id), dictionary, true);
+            container.getPlugin().getLogger().info("Trained a compression dictionary of " + dictionary.length + " bytes for " + container.getClass().getSimpleName());
+        }
+        container.setCodec(CompressedCodec.withDictionary(inner, dictionary));
+    }
 
-            try { // Safe loading.
-                if (container instanceof MapContainer<?, ?> mapContainer) {
-                    mapContainer.loadAllData();
-                } else if (container instanceof SingleContainer<?> singleContainer) {
-                    singleContainer.loadAllData();
+    private void load(@NotNull AbstractContainer<?> container, @NotNull InitialLoading initialLoading) {
+        try { // Safe loading.
+            if (container instanceof MapContainer<?, ?> mapContainer) {
+                int parallelism = initialLoading.parallelism();
+                if (parallelism <= 0) {
+                    parallelism = Runtime.getRuntime().availableProcessors();
                 }
-            } catch (Exception e) {
-                //noinspection CallToPrintStackTrace
-                e.printStackTrace();
+                mapContainer.loadAllData(parallelism);
+            } else if (container instanceof SingleContainer<?> singleContainer) {
+                singleContainer.loadAllData();
             }
+        } catch (Exception e) {
+            //noinspection CallToPrintStackTrace
+            e.printStackTrace();
         }
     }
 
@@ -98,20 +238,33 @@ public class ContainerManager {
     /**
      * You may want to save all containers before the plugin is disabled.
      * It's not a mandatory method, but it's recommended.
+     * The autosave is stopped, async operations and pending write-behind data are drained before the final save.
      * Additionally, it clears the container map after saving.
      */
     public void shutdown() {
+        if (this.autoSaveTask != null) {
+            this.autoSaveTask.cancel();
+            this.autoSaveTask = null;
+        }
+        this.snapshotTask.join(); // a running snapshot still reads the storages
         for (AbstractContainer<?> container : this.containerMap.values()) {
+            container.shutdownExecutor(); // Waits for async operations.
             if (container instanceof SingleContainer<?> singleContainer) {
                 try { // Safe saving.
                     singleContainer.saveData();
+                    singleContainer.closeStorage();
                 } catch (Exception e) {
                     //noinspection CallToPrintStackTrace
                     e.printStackTrace();
                 }
             } else if (container instanceof MapContainer<?, ?> mapContainer) {
                 try { // Safe saving.
-                    mapContainer.saveData(); // Saves all the data.
+                    mapContainer.disableWriteBehind(); // Drains pending writes.
+                    mapContainer.saveData(); // Saves all the data, unchanged objects are skipped.
+                    if (mapContainer.getPlugin() != null) {
+                        mapContainer.getPlugin().getLogger().info("Saved " + mapContainer.getClass().getSimpleName() + ": " + mapContainer.getFlushStats());
+                    }
+                    mapContainer.closeStorage(); // Everything is on disk now.
                 } catch (Exception e) {
                     //noinspection CallToPrintStackTrace
                     e.printStackTrace();
@@ -121,6 +274,149 @@ public class ContainerManager {
         this.containerMap.clear(); // Clears the map.
     }
 
+    /**
+     * Enables the metrics of all registered containers.
+     * Metrics are disabled by default since they are only needed when looking for a slow container.
+     */
+    public void enableMetrics() {
+        this.containerMap.values().forEach(AbstractContainer::enableMetrics);
+    }
+
+    /**
+     * Disables the metrics of all registered containers.
+     */
+    public void disableMetrics() {
+        this.containerMap.values().forEach(AbstractContainer::disableMetrics);
+    }
+
+    /**
+     * Takes a snapshot of the metrics of all containers that have them enabled.
+     *
+     * @return Snapshots by the parent folder name of the container.
+     */
+    public @NotNull Map<String, ContainerMetrics.Snapshot> metrics() {
+        Map<String, ContainerMetrics.Snapshot> snapshots = new TreeMap<>();
+        this.containerMap.forEach((parent, container) -> {
+            ContainerMetrics.Snapshot snapshot = container.metricsSnapshot();
+            if (snapshot != null) {
+                snapshots.put(parent, snapshot);
+            }
+        });
+        return snapshots;
+    }
+
+    /**
+     * Exports a point-in-time snapshot of all containers into a zip archive.
+     * <p>
+     * Must be called on the main thread. The loaded objects are serialized right away,
+     * which is the only part that takes time on the caller, see {@link AbstractContainer#captureSnapshot()}.
+     * The stored files are then streamed into the archive by a separate thread while the containers
+     * keep reading and writing. Loaded objects take precedence over their files.
+     * </p>
+     * <p>
+     * Entries are named {@code <parent>/<file name>}. The archive is written to a temporary file
+     * and moved in place once complete, so an existing archive is never left half written.
+     * </p>
+     *
+     * @param archive The zip file.
+     * @return Future completed once the archive is written.
+     */
+    public @NotNull CompletableFuture<SnapshotResult> snapshot(@NotNull Path archive) {
+        long start = System.nanoTime();
+        Map<String, AbstractContainer<?>> containers = new TreeMap<>(this.containerMap);
+        Map<String, Map<String, byte[]>> captured = new HashMap<>();
+        containers.forEach((parent, container) -> captured.put(parent, container.captureSnapshot()));
+        long captureMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        CompletableFuture<SnapshotResult> future = new CompletableFuture<>();
+        Thread thread = new Thread(() -> {
+            try {
+                future.complete(this.export(archive, containers, captured, captureMillis));
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            }
+        }, "Plus-Snapshot");
+        thread.setDaemon(true);
+        this.snapshotTask = CompletableFuture.allOf(this.snapshotTask, future.handle((result, e) -> null));
+        thread.start();
+        return future;
+    }
+
+    private @NotNull SnapshotResult export(@NotNull Path archive, @NotNull Map<String, AbstractContainer<?>> containers,
+                                           @NotNull Map<String, Map<String, byte[]>> captured, long captureMillis) throws IOException {
+        long start = System.nanoTime();
+        Path parent = archive.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Path temp = archive.resolveSibling(archive.getFileName() + AtomicFiles.TEMP_SUFFIX);
+        SnapshotWriter writer = new SnapshotWriter(temp);
+        try (writer) {
+            for (Map.Entry<String, AbstractContainer<?>> entry : containers.entrySet()) {
+                String folder = entry.getKey();
+                Map<String, byte[]> loaded = captured.get(folder);
+                loaded.forEach((name, data) -> writer.add(folder, name, data));
+                entry.getValue().exportStored((name, data) -> {
+                    if (!loaded.containsKey(name)) { // the file may be older than the loaded object
+                        writer.add(folder, name, data);
+                    }
+                });
+            }
+        } catch (UncheckedIOException e) {
+            Files.deleteIfExists(temp);
+            throw e.getCause();
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        try {
+            Files.move(temp, archive, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, archive, StandardCopyOption.REPLACE_EXISTING);
+        }
+        return new SnapshotResult(archive, writer.files, writer.bytes, captureMillis, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    /**
+     * Result of a snapshot.
+     *
+     * @param archive       The zip file.
+     * @param files         Amount of exported files.
+     * @param bytes         Total size of the exported files before zipping.
+     * @param captureMillis Time spent serializing the loaded objects on the main thread.
+     * @param exportMillis  Time spent writing the archive.
+     */
+    public record SnapshotResult(@NotNull Path archive, int files, long bytes, long captureMillis, long exportMillis) {
+    }
+
+    private static final class SnapshotWriter implements Closeable {
+        private final @NotNull ZipOutputStream zip;
+        private int files = 0;
+        private long bytes = 0;
+
+        private SnapshotWriter(@NotNull Path path) throws IOException {
+            this.zip = new ZipOutputStream(new BufferedOutputStream(Files.newOutputStream(path)));
+            this.zip.setLevel(Deflater.BEST_SPEED); // compressed containers are not worth more effort
+        }
+
+        private void add(@NotNull String folder, @NotNull String name, byte @NotNull [] data) {
+            try {
+                this.zip.putNextEntry(new ZipEntry(folder + "/" + name));
+                this.zip.write(data);
+                this.zip.closeEntry();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            this.files++;
+            this.bytes += data.length;
+        }
+
+        @Override
+        public void close() throws IOException {
+            this.zip.close();
+        }
+    }
+
     /**
      * Finds a container by its type.
      *
@@ -0,0 +1,343 @@
+package com.marcusslover.plus.lib.container.codec;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Codec that stores objects in a compact binary form of their JSON tree.
+ * <p>
+ * Layout: a 3 byte magic header, the format version, then the tree. The schema version of the object
+ * is part of the tree, see {@link com.marcusslover.plus.lib.container.AbstractContainer#VERSION_FIELD}.
+ * Every value starts with a one byte tag. Strings, arrays and objects are prefixed by their length,
+ * integers are zig-zag varints and decimals are 8 byte doubles.
+ * </p>
+ */
+public final class BinaryCodec implements ContainerCodec {
+    static final byte[] MAGIC = {0x00, 'P', 'B'};
+    static final int FORMAT_VERSION = 2;
+    static final int FORMAT_VERSION_WITH_SCHEMA = 1; // followed by an unused schema version (varint)
+
+    static final byte TAG_NULL = 0;
+    static final byte TAG_FALSE = 1;
+    static final byte TAG_TRUE = 2;
+    static final byte TAG_LONG = 3;
+    static final byte TAG_DOUBLE = 4;
+    static final byte TAG_STRING = 5;
+    static final byte TAG_ARRAY = 6;
+    static final byte TAG_OBJECT = 7;
+    static final byte TAG_BIG_NUMBER = 8;
+
+    /**
+     * Checks if the content was written by a binary codec.
+     *
+     * @param data The content.
+     * @return True if the content starts with the binary header.
+     */
+    public static boolean isBinary(byte @NotNull [] data) {
+        return data.length >= MAGIC.length && data[0] == MAGIC[0] && data[1] == MAGIC[1] && data[2] == MAGIC[2];
+    }
+
+    private static @NotNull Input header(byte @NotNull [] data) {
+        if (!isBinary(data)) {
+            throw new IllegalArgumentException("Not a binary container file");
+        }
+        Input input = new Input(data, MAGIC.length);
+        int format = input.readByte();
+        if (format == FORMAT_VERSION_WITH_SCHEMA) {
+            input.readVarInt(); // always 0, the version is in the tree
+        } else if (format != FORMAT_VERSION) {
+            throw new IllegalArgumentException("Unsupported binary format version: " + format);
+        }
+        return input;
+    }
+
+    @Override
+    public @NotNull String extension() {
+        return ".bin";
+    }
+
+    @Override
+    public byte @NotNull [] encode(@NotNull Gson gson, @NotNull Object value) {
+        return this.encodeTree(gson.toJsonTree(value));
+    }
+
+    /**
+     * Encodes an already built JSON tree.
+     *
+     * @param tree The tree.
+     * @return The encoded content.
+     */
+    public byte @NotNull [] encodeTree(@NotNull JsonElement tree) {
+        Output output = new Output();
+        output.write(MAGIC, 0, MAGIC.length);
+        output.write(FORMAT_VERSION);
+        output.writeElement(tree);
+        return output.toByteArray();
+    }
+
+    @Override
+    public <T> @Nullable T decode(@NotNull Gson gson, byte @NotNull [] data, @NotNull Class<T> type) {
+        return gson.fromJson(decodeTree(data), type);
+    }
+
+    /**
+     * Decodes the content into a JSON tree.
+     *
+     * @param data The content.
+     * @return The tree.
+     */
+    public static @NotNull JsonElement decodeTree(byte @NotNull [] data) {
+        return header(data).readElement();
+    }
+
+    @Override
+    public @NotNull JsonObject readFields(byte @NotNull [] data, @NotNull Set<String> fields) {
+        Input input = header(data);
+        JsonObject result = new JsonObject();
+        if (input.readByte() != TAG_OBJECT) {
+            return result;
+        }
+        int size = input.readVarInt();
+        for (int i = 0; i < size && result.size() < fields.size(); i++) {
+            String key = input.readString();
+            if (fields.contains(key)) {
+                result.add(key, input.readElement());
+            } else {
+                input.skipElement(); // never builds the value
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Growable output with varint support.
+     */
+    static final class Output extends ByteArrayOutputStream {
+        Output() {
+            super(256);
+        }
+
+        void writeVarInt(int value) {
+            while ((value & ~0x7F) != 0) {
+                this.write((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            this.write(value);
+        }
+
+        void writeVarLong(long value) {
+            while ((value & ~0x7FL) != 0) {
+                this.write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            this.write((int) value);
+        }
+
+        void writeString(@NotNull String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            this.writeVarInt(bytes.length);
+            this.write(bytes, 0, bytes.length);
+        }
+
+        void writeElement(@Nullable JsonElement element) {
+            if (element == null || element.isJsonNull()) {
+                this.write(TAG_NULL);
+            } else if (element.isJsonObject()) {
+                JsonObject object = element.getAsJsonObject();
+                this.write(TAG_OBJECT);
+                this.writeVarInt(object.size());
+                for (Map.Entry<String, JsonElement> entry : object.entrySet()) {
+                    this.writeString(entry.getKey());
+                    this.writeElement(entry.getValue());
+                }
+            } else if (element.isJsonArray()) {
+                JsonArray array = element.getAsJsonArray();
+                this.write(TAG_ARRAY);
+                this.writeVarInt(array.size());
+                for (JsonElement item : array) {
+                    this.writeElement(item);
+                }
+            } else {
+                this.writePrimitive(element.getAsJsonPrimitive());
+            }
+        }
+
+        private void writePrimitive(@NotNull JsonPrimitive primitive) {
+            if (primitive.isBoolean()) {
+                this.write(primitive.getAsBoolean() ? TAG_TRUE : TAG_FALSE);
+            } else if (primitive.isString()) {
+                this.write(TAG_STRING);
+                this.writeString(primitive.getAsString());
+            } else {
+                Number number = primitive.getAsNumber();
+                if (number instanceof Integer || number instanceof Long || number instanceof Short || number instanceof Byte) {
+                    long value = number.longValue();
+                    this.write(TAG_LONG);
+                    this.writeVarLong((value << 1) ^ (value >> 63)); // zig-zag
+                } else if (number instanceof Double || number instanceof Float) {
+                    long bits = Double.doubleToRawLongBits(number.doubleValue());
+                    this.write(TAG_DOUBLE);
+                    for (int shift = 56; shift >= 0; shift -= 8) {
+                        this.write((int) (bits >>> shift));
+                    }
+                } else { // big or lazily parsed numbers keep their exact text
+                    this.write(TAG_BIG_NUMBER);
+                    this.writeString(number.toString());
+                }
+            }
+        }
+    }
+
+    /**
+     * Reader over the content of a binary file.
+     */
+    static final class Input {
+        private final byte @NotNull [] data;
+        private int position;
+
+        Input(byte @NotNull [] data, int position) {
+            this.data = data;
+            this.position = position;
+        }
+
+        int readByte() {
+            if (this.position >= this.data.length) {
+                throw new IllegalArgumentException("Unexpected end of binary container file");
+            }
+            return this.data[this.position++] & 0xFF;
+        }
+
+        int readVarInt() {
+            int value = 0;
+            for (int shift = 0; shift < 35; shift += 7) {
+                int b = this.readByte();
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("Malformed varint");
+        }
+
+        long readVarLong() {
+            long value = 0;
+            for (int shift = 0; shift < 70; shift += 7) {
+                int b = this.readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("Malformed varlong");
+        }
+
+        @NotNull String readString() {
+            int length = this.readVarInt();
+            if (length < 0 || this.position + length > this.data.length) {
+                throw new IllegalArgumentException("Unexpected end of binary container file");
+            }
+            String value = new String(this.data, this.position, length, StandardCharsets.UTF_8);
+            this.position += length;
+            return value;
+        }
+
+        private void skip(int length) {
+            if (length < 0 || this.position + length > this.data.length) {
+                throw new IllegalArgumentException("Unexpected end of binary container file");
+            }
+            this.position += length;
+        }
+
+        void skipElement() {
+            int tag = this.readByte();
+            switch (tag) {
+                case TAG_NULL, TAG_FALSE, TAG_TRUE:
+                    return;
+                case TAG_LONG:
+                    this.readVarLong();
+                    return;
+                case TAG_DOUBLE:
+                    this.skip(8);
+                    return;
+                case TAG_STRING, TAG_BIG_NUMBER:
+                    this.skip(this.readVarInt());
+                    return;
+                case TAG_ARRAY: {
+                    int size = this.readVarInt();
+                    for (int i = 0; i < size; i++) {
+                        this.skipElement();
+                    }
+                    return;
+                }
+                case TAG_OBJECT: {
+                    int size = this.readVarInt();
+                    for (int i = 0; i < size; i++) {
+                        this.skip(this.readVarInt()); // key
+                        this.skipElement();
+                    }
+                    return;
+                }
+                default:
+                    throw new IllegalArgumentException("Unknown tag in binary container file: " + tag);
+            }
+        }
+
+        @NotNull JsonElement readElement() {
+            int tag = this.readByte();
+            switch (tag) {
+                case TAG_NULL:
+                    return JsonNull.INSTANCE;
+                case TAG_FALSE:
+                    return new JsonPrimitive(false);
+                case TAG_TRUE:
+                    return new JsonPrimitive(true);
+                case TAG_LONG: {
+                    long raw = this.readVarLong();
+                    return new JsonPrimitive((raw >>> 1) ^ -(raw & 1));
+                }
+                case TAG_DOUBLE: {
+                    long bits = 0;
+                    for (int i = 0; i < 8; i++) {
+                        bits = (bits << 8) | this.readByte();
+                    }
+                    return new JsonPrimitive(Double.longBitsToDouble(bits));
+                }
+                case TAG_STRING:
+                    return new JsonPrimitive(this.readString());
+                case TAG_BIG_NUMBER:
+                    return new JsonPrimitive(new BigDecimal(this.readString()));
+                case TAG_ARRAY: {
+                    int size = this.readVarInt();
+                    JsonArray array = new JsonArray(size);
+                    for (int i = 0; i < size; i++) {
+                        array.add(this.readElement());
+                    }
+                    return array;
+                }
+                case TAG_OBJECT: {
+                    int size = this.readVarInt();
+                    JsonObject object = new JsonObject();
+                    for (int i = 0; i < size; i++) {
+                        String key = this.readString();
+                        object.add(key, this.readElement());
+                    }
+                    return object;
+                }
+                default:
+                    throw new IllegalArgumentException("Unknown tag in binary container file: " + tag);
+            }
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.marcusslover.plus.lib.container.codec;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.CharArrayReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Buffers reused by the codecs of one thread.
+ * <p>
+ * Encoding writes into a growing byte buffer through a single UTF-8 writer, and decoding turns the
+ * content into characters in one pass, so neither allocates intermediate strings, streams or writers per object.
+ * The buffers of a thread are only lent to one codec call at a time, nested calls get fresh ones.
+ * </p>
+ */
+final class CodecBuffers {
+    private static final ThreadLocal<CodecBuffers> LOCAL = ThreadLocal.withInitial(CodecBuffers::new);
+    private static final int MAX_RETAINED = 1 << 20; // larger buffers are not kept after the call
+
+    private final @NotNull Output output = new Output();
+    private final @NotNull Writer writer = new OutputStreamWriter(this.output, StandardCharsets.UTF_8);
+    private final @NotNull CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private @NotNull CharBuffer chars = CharBuffer.allocate(1024);
+    private boolean busy = false;
+    private boolean clean = true;
+
+    private CodecBuffers() {
+    }
+
+    /**
+     * Borrows the buffers of the current thread. Must be given back with {@link #release()}.
+     *
+     * @return The buffers.
+     */
+    static @NotNull CodecBuffers acquire() {
+        CodecBuffers buffers = LOCAL.get();
+        if (buffers.busy) { // a type adapter decoding another object
+            return new CodecBuffers();
+        }
+        buffers.busy = true;
+        buffers.clean = false;
+        buffers.output.reset();
+        return buffers;
+    }
+
+    /**
+     * Gets the UTF-8 writer of the output, flush it before reading the output.
+     *
+     * @return The writer.
+     */
+    @NotNull Writer writer() {
+        return this.writer;
+    }
+
+    /**
+     * Copies the written content, which also marks the call as successful.
+     *
+     * @return The content.
+     */
+    byte @NotNull [] toByteArray() {
+        this.clean = true;
+        return this.output.toByteArray();
+    }
+
+    /**
+     * Decodes UTF-8 content into the character buffer.
+     *
+     * @param data The content.
+     * @return Reader over the characters, valid until the buffers are released.
+     */
+    @NotNull Reader reader(byte @NotNull [] data) {
+        if (this.chars.capacity() < data.length) { // UTF-8 never has more characters than bytes
+            this.chars = CharBuffer.allocate(data.length);
+        }
+        this.chars.clear();
+        this.decoder.reset();
+        this.decoder.decode(ByteBuffer.wrap(data), this.chars, true);
+        this.decoder.flush(this.chars);
+        this.clean = true; // the writer is untouched
+        return new CharArrayReader(this.chars.array(), 0, this.chars.position());
+    }
+
+    /**
+     * Gives the buffers back to the thread.
+     * Buffers that grew too large or were left in an unknown state by an exception are dropped.
+     */
+    void release() {
+        if (!this.busy) {
+            return; // not the buffers of the thread
+        }
+        this.busy = false;
+        if (!this.clean || this.output.capacity() > MAX_RETAINED || this.chars.capacity() > MAX_RETAINED) {
+            LOCAL.remove();
+        }
+    }
+
+    private static final class Output extends ByteArrayOutputStream {
+        private Output() {
+            super(1024);
+        }
+
+        private int capacity() {
+            return this.buf.length;
+        }
+    }
+}
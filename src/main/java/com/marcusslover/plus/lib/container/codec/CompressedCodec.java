@@ -0,0 +1,239 @@
+package com.marcusslover.plus.lib.container.codec;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.Adler32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.Inflater;
+
+/**
+ * Codec that compresses the content of another codec.
+ * <p>
+ * Without a dictionary, the content is a plain GZIP stream. With a dictionary, the content is a 3 byte
+ * magic header followed by a zlib stream that references the dictionary by its Adler-32 checksum.
+ * Small files compress much better with a dictionary, see {@link #trainDictionary(Collection, int)}.
+ * Reading detects the compression from the content, dictionaries must be registered before.
+ * </p>
+ */
+public final class CompressedCodec implements ContainerCodec {
+    /*Prefix of the files the container manager keeps dictionaries in*/
+    public static final String DICTIONARY_FILE_PREFIX = ".dictionary-";
+    static final byte[] DICTIONARY_MAGIC = {0x00, 'P', 'Z'};
+    private static final Map<Integer, byte[]> DICTIONARIES = new ConcurrentHashMap<>();
+    private static final int SHINGLE_LENGTH = 16;
+
+    private final @NotNull ContainerCodec inner;
+    private final byte @Nullable [] dictionary;
+
+    private CompressedCodec(@NotNull ContainerCodec inner, byte @Nullable [] dictionary) {
+        this.inner = inner;
+        this.dictionary = dictionary;
+    }
+
+    /**
+     * Creates a codec that compresses the content of the given codec with GZIP.
+     *
+     * @param inner The codec to compress.
+     * @return The codec.
+     */
+    public static @NotNull CompressedCodec gzip(@NotNull ContainerCodec inner) {
+        return new CompressedCodec(inner, null);
+    }
+
+    /**
+     * Creates a codec that compresses the content of the given codec using a preset dictionary.
+     * The dictionary is registered, so content written with it can be read.
+     *
+     * @param inner      The codec to compress.
+     * @param dictionary The dictionary.
+     * @return The codec.
+     */
+    public static @NotNull CompressedCodec withDictionary(@NotNull ContainerCodec inner, byte @NotNull [] dictionary) {
+        registerDictionary(dictionary);
+        return new CompressedCodec(inner, dictionary.clone());
+    }
+
+    /**
+     * Registers a dictionary, so that content written with it can be read.
+     *
+     * @param dictionary The dictionary.
+     * @return Id of the dictionary, its Adler-32 checksum.
+     */
+    public static int registerDictionary(byte @NotNull [] dictionary) {
+        int id = dictionaryId(dictionary);
+        DICTIONARIES.putIfAbsent(id, dictionary.clone());
+        return id;
+    }
+
+    /**
+     * Computes the id of a dictionary, which is stored in every content compressed with it.
+     *
+     * @param dictionary The dictionary.
+     * @return Id of the dictionary, its Adler-32 checksum.
+     */
+    public static int dictionaryId(byte @NotNull [] dictionary) {
+        Adler32 adler = new Adler32();
+        adler.update(dictionary);
+        return (int) adler.getValue();
+    }
+
+    /**
+     * Checks if the content was written by a compressed codec.
+     *
+     * @param data The content.
+     * @return True if the content is compressed.
+     */
+    public static boolean isCompressed(byte @NotNull [] data) {
+        if (data.length >= 2 && (data[0] & 0xFF) == 0x1F && (data[1] & 0xFF) == 0x8B) {
+            return true; // GZIP
+        }
+        return data.length >= DICTIONARY_MAGIC.length
+                && data[0] == DICTIONARY_MAGIC[0] && data[1] == DICTIONARY_MAGIC[1] && data[2] == DICTIONARY_MAGIC[2];
+    }
+
+    /**
+     * Decompresses the content.
+     *
+     * @param data The compressed content.
+     * @return Content of the inner codec.
+     */
+    public static byte @NotNull [] decompress(byte @NotNull [] data) {
+        if (data[0] != DICTIONARY_MAGIC[0]) {
+            try (GZIPInputStream input = new GZIPInputStream(new ByteArrayInputStream(data))) {
+                return input.readAllBytes();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data, DICTIONARY_MAGIC.length, data.length - DICTIONARY_MAGIC.length);
+            ByteArrayOutputStream output = new ByteArrayOutputStream(data.length * 4);
+            byte[] buffer = new byte[8192];
+            while (!inflater.finished()) {
+                int read = inflater.inflate(buffer);
+                if (read == 0) {
+                    if (inflater.needsDictionary()) {
+                        byte[] dictionary = DICTIONARIES.get(inflater.getAdler());
+                        if (dictionary == null) {
+                            throw new IllegalStateException("Unknown compression dictionary: " + Integer.toHexString(inflater.getAdler()));
+                        }
+                        inflater.setDictionary(dictionary);
+                    } else if (inflater.needsInput()) {
+                        throw new IllegalArgumentException("Truncated compressed container file");
+                    }
+                }
+                output.write(buffer, 0, read);
+            }
+            return output.toByteArray();
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("Malformed compressed container file", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Builds a dictionary out of the byte sequences that occur in most samples.
+     * <p>
+     * Sequences are ranked by the amount of samples they occur in, and the most common ones
+     * are put at the end of the dictionary where Deflate references them most cheaply.
+     * Pass a few hundred typical files, for example uncompressed files of the container.
+     * </p>
+     *
+     * @param samples The samples.
+     * @param size    Maximum size of the dictionary in bytes, Deflate uses at most 32KB.
+     * @return The dictionary.
+     */
+    public static byte @NotNull [] trainDictionary(@NotNull Collection<byte[]> samples, int size) {
+        Map<String, Integer> occurrences = new HashMap<>();
+        for (byte[] sample : samples) {
+            Set<String> seen = new HashSet<>();
+            for (int i = 0; i + SHINGLE_LENGTH <= sample.length; i++) {
+                String shingle = new String(sample, i, SHINGLE_LENGTH, StandardCharsets.ISO_8859_1); // one char per byte
+                if (seen.add(shingle)) {
+                    occurrences.merge(shingle, 1, Integer::sum);
+                }
+            }
+        }
+        List<Map.Entry<String, Integer>> ranked = new ArrayList<>(occurrences.entrySet());
+        ranked.removeIf(entry -> entry.getValue() < 2); // unique to a single file
+        ranked.sort(Map.Entry.<String, Integer>comparingByValue().reversed());
+
+        Deque<String> parts = new ArrayDeque<>();
+        StringBuilder covered = new StringBuilder();
+        int length = 0;
+        int candidates = Math.min(ranked.size(), size / 4); // bounds the overlap checks
+        for (Map.Entry<String, Integer> entry : ranked.subList(0, candidates)) {
+            if (length + SHINGLE_LENGTH > size) {
+                break;
+            }
+            if (covered.indexOf(entry.getKey()) >= 0) {
+                continue; // already part of the dictionary
+            }
+            parts.addFirst(entry.getKey()); // most common last
+            covered.append(entry.getKey());
+            length += SHINGLE_LENGTH;
+        }
+        return String.join("", parts).getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    @Override
+    public @NotNull String extension() {
+        return this.inner.extension() + ".z"; // same for both, the content tells them apart
+    }
+
+    @Override
+    public byte @NotNull [] encode(@NotNull Gson gson, @NotNull Object value) {
+        byte[] raw = this.inner.encode(gson, value);
+        if (this.dictionary == null) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(raw.length / 2 + 32);
+            try (GZIPOutputStream output = new GZIPOutputStream(bytes)) {
+                output.write(raw);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return bytes.toByteArray();
+        }
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try {
+            deflater.setDictionary(this.dictionary);
+            deflater.setInput(raw);
+            deflater.finish();
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(raw.length / 2 + 32);
+            bytes.write(DICTIONARY_MAGIC, 0, DICTIONARY_MAGIC.length);
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                bytes.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return bytes.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    @Override
+    public <T> @Nullable T decode(@NotNull Gson gson, byte @NotNull [] data, @NotNull Class<T> type) {
+        byte[] raw = decompress(data);
+        return ContainerCodec.detect(raw).decode(gson, raw, type);
+    }
+
+    @Override
+    public @NotNull JsonObject readFields(byte @NotNull [] data, @NotNull Set<String> fields) {
+        byte[] raw = decompress(data);
+        return ContainerCodec.detect(raw).readFields(raw, fields);
+    }
+}
@@ -0,0 +1,97 @@
+package com.marcusslover.plus.lib.container.codec;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Turns container objects into the content of their files and back.
+ * <p>
+ * Codecs are used by {@link com.marcusslover.plus.lib.container.AbstractContainer#getCodec()}.
+ * Reading always detects the codec from the content itself,
+ * so files written by a different codec are still readable.
+ * </p>
+ */
+public interface ContainerCodec {
+    /**
+     * Pretty-printed JSON as configured by the Gson instance, the default codec.
+     */
+    @NotNull ContainerCodec JSON = new JsonCodec(false);
+    /**
+     * JSON without any whitespace.
+     */
+    @NotNull ContainerCodec MINIFIED_JSON = new JsonCodec(true);
+    /**
+     * Compact binary format.
+     */
+    @NotNull ContainerCodec BINARY = new BinaryCodec();
+    /**
+     * Minified JSON compressed with GZIP.
+     */
+    @NotNull ContainerCodec GZIP_JSON = CompressedCodec.gzip(MINIFIED_JSON);
+    /**
+     * File extensions of the built-in codecs, compressed ones included.
+     * The content of a file in any of them is recognized by {@link #detect(byte[])}.
+     */
+    @NotNull List<String> EXTENSIONS = List.of(".json", ".bin", ".json.z", ".bin.z");
+
+    /**
+     * Detects the codec that wrote the given content.
+     *
+     * @param data The content.
+     * @return The codec able to read the content.
+     */
+    static @NotNull ContainerCodec detect(byte @NotNull [] data) {
+        if (CompressedCodec.isCompressed(data)) {
+            return GZIP_JSON; // decompresses and detects the inner codec
+        }
+        if (BinaryCodec.isBinary(data)) {
+            return BINARY;
+        }
+        return JSON;
+    }
+
+    /**
+     * Gets the file extension of this codec, including the dot.
+     *
+     * @return The extension.
+     */
+    @NotNull String extension();
+
+    /**
+     * Encodes the object.
+     *
+     * @param gson  Gson instance of the container.
+     * @param value The object.
+     * @return The encoded content.
+     */
+    byte @NotNull [] encode(@NotNull Gson gson, @NotNull Object value);
+
+    /**
+     * Decodes the object.
+     *
+     * @param gson Gson instance of the container.
+     * @param data The encoded content.
+     * @param type Type of the object.
+     * @param <T>  Type of the object.
+     * @return The object or null if the content represents null.
+     */
+    <T> @Nullable T decode(@NotNull Gson gson, byte @NotNull [] data, @NotNull Class<T> type);
+
+    /**
+     * Reads only the given top-level fields of the encoded object.
+     * <p>
+     * The content is streamed, all other fields are skipped without being decoded,
+     * and reading stops as soon as all fields were found.
+     * </p>
+     *
+     * @param data   The encoded content.
+     * @param fields Names of the fields.
+     * @return Object with the fields that were found, empty if the content is not an object.
+     */
+    @NotNull JsonObject readFields(byte @NotNull [] data, @NotNull Set<String> fields);
+}
@@ -0,0 +1,91 @@
+package com.marcusslover.plus.lib.container.codec;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+
+/**
+ * Codec that stores objects as JSON text.
+ */
+public final class JsonCodec implements ContainerCodec {
+    private final boolean minified;
+
+    /**
+     * Creates a new JSON codec.
+     *
+     * @param minified True to strip all whitespace, false to keep the formatting of the Gson instance.
+     */
+    public JsonCodec(boolean minified) {
+        this.minified = minified;
+    }
+
+    @Override
+    public @NotNull String extension() {
+        return ".json";
+    }
+
+    @Override
+    public byte @NotNull [] encode(@NotNull Gson gson, @NotNull Object value) {
+        CodecBuffers buffers = CodecBuffers.acquire();
+        try {
+            JsonWriter writer;
+            if (this.minified) {
+                writer = new JsonWriter(buffers.writer()); // no indent
+                writer.setSerializeNulls(gson.serializeNulls());
+            } else {
+                writer = gson.newJsonWriter(buffers.writer()); // same output as Gson#toJson(Object)
+            }
+            gson.toJson(value, value.getClass(), writer);
+            writer.flush(); // not closed, the writer of the buffers is reused
+            return buffers.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            buffers.release();
+        }
+    }
+
+    @Override
+    public <T> @Nullable T decode(@NotNull Gson gson, byte @NotNull [] data, @NotNull Class<T> type) {
+        CodecBuffers buffers = CodecBuffers.acquire();
+        try {
+            return gson.fromJson(buffers.reader(data), type);
+        } finally {
+            buffers.release();
+        }
+    }
+
+    @Override
+    public @NotNull JsonObject readFields(byte @NotNull [] data, @NotNull Set<String> fields) {
+        JsonObject result = new JsonObject();
+        try (JsonReader reader = new JsonReader(new InputStreamReader(new ByteArrayInputStream(data), StandardCharsets.UTF_8))) {
+            if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+                return result;
+            }
+            reader.beginObject();
+            while (reader.hasNext() && result.size() < fields.size()) {
+                String name = reader.nextName();
+                if (fields.contains(name)) {
+                    result.add(name, JsonParser.parseReader(reader));
+                } else {
+                    reader.skipValue(); // never builds the value
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,49 @@
+package com.marcusslover.plus.lib.container.extra;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Annotate your custom container class with this annotation to save it periodically.
+ * <p>
+ * Loaded objects are saved without being unloaded, so a crash only loses the changes since the last autosave.
+ * A save of a map container is spread over several ticks: each tick serializes at most
+ * {@link #keysPerTick()} objects or until {@link #tickBudgetMicros()} is used up,
+ * and the files are written off the main thread. Objects that did not change are skipped.
+ * </p>
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface AutoSave {
+
+    /**
+     * The interval between the start of two saves.
+     *
+     * @return The interval.
+     */
+    long interval() default 5;
+
+    /**
+     * The unit of the {@link #interval()}.
+     *
+     * @return The time unit.
+     */
+    TimeUnit unit() default TimeUnit.MINUTES;
+
+    /**
+     * Maximum amount of objects serialized per tick, 0 for no limit.
+     *
+     * @return The amount of objects.
+     */
+    int keysPerTick() default 0;
+
+    /**
+     * Time in microseconds a save may take per tick, 0 for no limit.
+     *
+     * @return The time budget.
+     */
+    long tickBudgetMicros() default 1000;
+}
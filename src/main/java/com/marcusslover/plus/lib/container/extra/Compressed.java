@@ -0,0 +1,42 @@
+package com.marcusslover.plus.lib.container.extra;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Annotate your custom container class with this annotation to compress its files.
+ * <p>
+ * Objects are written as minified JSON compressed with GZIP. Map containers can additionally use a
+ * dictionary trained over their existing files, which compresses small and repetitive files much better.
+ * The dictionary is trained once, kept in the container folder and must not be deleted.
+ * Uncompressed files stay readable and are compressed when they are written again.
+ * See {@link com.marcusslover.plus.lib.container.codec.CompressedCodec}.
+ * </p>
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface Compressed {
+
+    /**
+     * Whether a map container should train and use a dictionary.
+     *
+     * @return True to use a dictionary.
+     */
+    boolean dictionary() default false;
+
+    /**
+     * Maximum size of the dictionary in bytes.
+     *
+     * @return The size.
+     */
+    int dictionarySize() default 32 * 1024;
+
+    /**
+     * Amount of existing files the dictionary is trained on.
+     *
+     * @return The amount of files.
+     */
+    int samples() default 500;
+}
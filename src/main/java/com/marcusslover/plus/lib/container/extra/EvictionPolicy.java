@@ -0,0 +1,70 @@
+package com.marcusslover.plus.lib.container.extra;
+
+import lombok.Data;
+import lombok.experimental.Accessors;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToLongFunction;
+
+/**
+ * Describes when a map container should evict its least recently used objects from the cache.
+ * Evicted objects are unloaded right away and written back to their files in the background.
+ * Each limit is disabled when set to 0.
+ *
+ * @param <V> Value type.
+ */
+@Data
+@Accessors(fluent = true, chain = true)
+public class EvictionPolicy<V> {
+    private long maxEntries = 0; // maximum amount of cached objects
+    private long maxWeight = 0; // maximum total weight of cached objects, requires a weigher
+    private @Nullable ToLongFunction<V> weigher = null; // weight of a single object
+    private long expireAfterAccess = 0; // in milliseconds
+
+    /**
+     * Creates a new policy without any limits.
+     *
+     * @param <V> Value type.
+     * @return The policy.
+     */
+    public static <V> @NotNull EvictionPolicy<V> create() {
+        return new EvictionPolicy<>();
+    }
+
+    /**
+     * Sets after how long an object is evicted if nobody accessed it.
+     *
+     * @param duration The duration.
+     * @param unit     The unit of the duration.
+     * @return The policy.
+     */
+    public @NotNull EvictionPolicy<V> expireAfterAccess(long duration, @NotNull TimeUnit unit) {
+        this.expireAfterAccess = unit.toMillis(duration);
+        return this;
+    }
+
+    /**
+     * Sets the maximum total weight of the cached objects.
+     *
+     * @param maxWeight The maximum weight.
+     * @param weigher   Function that weighs a single object.
+     * @return The policy.
+     */
+    public @NotNull EvictionPolicy<V> maxWeight(long maxWeight, @NotNull ToLongFunction<V> weigher) {
+        this.maxWeight = maxWeight;
+        this.weigher = weigher;
+        return this;
+    }
+
+    /**
+     * Weighs the object.
+     *
+     * @param value The object.
+     * @return The weight, 1 if there is no weigher.
+     */
+    public long weigh(@NotNull V value) {
+        return this.weigher == null ? 1 : this.weigher.applyAsLong(value);
+    }
+}
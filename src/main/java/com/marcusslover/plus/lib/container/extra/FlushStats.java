@@ -0,0 +1,77 @@
+package com.marcusslover.plus.lib.container.extra;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts what a container did when it was asked to write its objects.
+ * Objects whose content did not change since they were last read or written are skipped.
+ */
+public final class FlushStats {
+    private final LongAdder written = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+
+    /**
+     * Records written objects.
+     *
+     * @param objects Amount of written objects.
+     * @param bytes   Amount of written bytes.
+     */
+    public void recordWritten(int objects, long bytes) {
+        this.written.add(objects);
+        this.bytes.add(bytes);
+    }
+
+    /**
+     * Records objects that were skipped because they did not change.
+     *
+     * @param objects Amount of skipped objects.
+     */
+    public void recordSkipped(int objects) {
+        this.skipped.add(objects);
+    }
+
+    /**
+     * Gets the amount of written objects, deletions included.
+     *
+     * @return The amount of written objects.
+     */
+    public long written() {
+        return this.written.sum();
+    }
+
+    /**
+     * Gets the amount of objects that were not written because they did not change,
+     * or because a newer content of them was written instead.
+     *
+     * @return The amount of skipped objects.
+     */
+    public long skipped() {
+        return this.skipped.sum();
+    }
+
+    /**
+     * Gets the amount of written bytes.
+     *
+     * @return The amount of written bytes.
+     */
+    public long bytes() {
+        return this.bytes.sum();
+    }
+
+    /**
+     * Resets all counters.
+     */
+    public void reset() {
+        this.written.reset();
+        this.skipped.reset();
+        this.bytes.reset();
+    }
+
+    @Override
+    public @NotNull String toString() {
+        return this.written() + " written, " + this.skipped() + " unchanged, " + this.bytes() + " bytes";
+    }
+}
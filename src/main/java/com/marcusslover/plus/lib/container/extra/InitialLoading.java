@@ -19,5 +19,13 @@ public @interface InitialLoading {
      * @return True if it should autoload, false if it shouldn't load.
      */
     boolean value() default true;
+
+    /**
+     * Amount of threads used to load the files of a map container.
+     * Use 0 to use one thread per available processor, 1 to load on a single thread.
+     *
+     * @return The amount of loader threads.
+     */
+    int parallelism() default 0;
 }
 
@@ -0,0 +1,26 @@
+package com.marcusslover.plus.lib.container.extra;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Annotate your custom map container class with this annotation to protect its writes with a journal.
+ * <p>
+ * Each batch of writes costs a single fsync of the journal instead of one fsync per file.
+ * The journal is replayed when the container is initialized after a crash.
+ * Works best together with {@link WriteBehind}.
+ * </p>
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface Journaled {
+
+    /**
+     * Size of the journal in bytes after which all written files are synced and the journal is truncated.
+     *
+     * @return The checkpoint size.
+     */
+    long checkpointSize() default 16 * 1024 * 1024;
+}
@@ -0,0 +1,27 @@
+package com.marcusslover.plus.lib.container.extra;
+
+import com.google.gson.JsonObject;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * One step of a schema migration, upgrading stored objects by exactly one version.
+ * <p>
+ * Migrations work on the JSON tree of the object, before Gson maps it to the class,
+ * so fields can be renamed, split, merged or converted without losing data.
+ * Register them with {@link com.marcusslover.plus.lib.container.AbstractContainer#registerMigration(int, Migration)}.
+ * </p>
+ * Example:
+ * <pre>{@code
+ * container.registerMigration(0, object -> object.add("coins", object.remove("money")));
+ * }</pre>
+ */
+@FunctionalInterface
+public interface Migration {
+
+    /**
+     * Upgrades the object in place.
+     *
+     * @param object The object, as stored by the previous version.
+     */
+    void migrate(@NotNull JsonObject object);
+}
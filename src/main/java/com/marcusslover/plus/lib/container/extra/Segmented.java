@@ -0,0 +1,27 @@
+package com.marcusslover.plus.lib.container.extra;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Annotate your custom map container class with this annotation to keep all its objects
+ * in a few append-only segment files instead of one file per object.
+ * <p>
+ * Meant for containers with a huge amount of small objects.
+ * Existing object files and a pending journal are imported into the segments when the container is initialized.
+ * See {@link com.marcusslover.plus.lib.container.storage.SegmentedStorage}.
+ * </p>
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface Segmented {
+
+    /**
+     * Size of a segment in bytes after which a new segment is started.
+     *
+     * @return The segment size.
+     */
+    long segmentSize() default 64 * 1024 * 1024;
+}
@@ -0,0 +1,26 @@
+package com.marcusslover.plus.lib.container.extra;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Annotate your custom map container class with this annotation to spread its files over shard directories.
+ * <p>
+ * Meant for containers with so many files that a single folder becomes slow to list.
+ * Files of the flat layout are moved into their shards when the container is initialized.
+ * See {@link com.marcusslover.plus.lib.container.storage.ShardedFileStorage}.
+ * </p>
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface Sharded {
+
+    /**
+     * Amount of nested shard directories, each level has up to 256 directories.
+     *
+     * @return The amount of levels, from 1 to 4.
+     */
+    int levels() default 2;
+}
@@ -0,0 +1,34 @@
+package com.marcusslover.plus.lib.container.extra;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Annotate your custom map container class with this annotation to enable write-behind persistence.
+ * <p>
+ * Calls to {@link com.marcusslover.plus.lib.container.AbstractContainer#update(Object)} only mark the key
+ * as pending, and a dedicated I/O thread writes all pending keys in one batch every interval.
+ * Repeated updates of the same key within one interval result in a single write.
+ * </p>
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface WriteBehind {
+
+    /**
+     * The interval between two flushes.
+     *
+     * @return The interval.
+     */
+    long interval() default 5;
+
+    /**
+     * The unit of the {@link #interval()}.
+     *
+     * @return The time unit.
+     */
+    TimeUnit unit() default TimeUnit.SECONDS;
+}
@@ -0,0 +1,32 @@
+package com.marcusslover.plus.lib.container.extra;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Resolves a write of a map container that was rejected because someone else changed the stored object.
+ * <p>
+ * Only needed when several servers share a storage. Once a handler is set, the container writes
+ * conditionally, expecting the version of the content it read or wrote last.
+ * </p>
+ *
+ * @param <K> Key type.
+ * @param <V> Value type.
+ * @see com.marcusslover.plus.lib.container.storage.ContainerStorage#compareAndWrite(java.util.Map, java.util.Map)
+ */
+@FunctionalInterface
+public interface WriteConflictHandler<K, V> {
+    /**
+     * Resolves the conflict, usually by merging both objects.
+     * <p>
+     * Called on the thread that writes. The result is written instead, and if the object
+     * is loaded, it replaces the loaded object in the cache.
+     * </p>
+     *
+     * @param key    Key of the object.
+     * @param local  Copy of the object that was rejected.
+     * @param stored The object written by someone else, null if it was deleted.
+     * @return The object to write, null to keep the stored object.
+     */
+    @Nullable V resolve(@NotNull K key, @NotNull V local, @Nullable V stored);
+}
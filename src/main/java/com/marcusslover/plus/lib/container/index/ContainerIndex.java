@@ -0,0 +1,37 @@
+package com.marcusslover.plus.lib.container.index;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Secondary index over the loaded objects of a map container.
+ * <p>
+ * Register an index with {@link com.marcusslover.plus.lib.container.type.MapContainer#addIndex(ContainerIndex)}.
+ * The container keeps it up to date whenever an object is stored, updated or unloaded.
+ * Changes to an object are only picked up on {@link com.marcusslover.plus.lib.container.AbstractContainer#update(Object)}.
+ * </p>
+ *
+ * @param <K> Key type.
+ * @param <V> Value type.
+ */
+public interface ContainerIndex<K, V> {
+
+    /**
+     * Indexes the object, replacing whatever was indexed for the key before.
+     *
+     * @param key   Key of the object.
+     * @param value The object.
+     */
+    void put(@NotNull K key, @NotNull V value);
+
+    /**
+     * Removes the key from the index.
+     *
+     * @param key Key of the object.
+     */
+    void remove(@NotNull K key);
+
+    /**
+     * Removes all keys from the index.
+     */
+    void clear();
+}
@@ -0,0 +1,107 @@
+package com.marcusslover.plus.lib.container.index;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Index that finds the keys of all objects with the given field value in constant time.
+ * Objects whose field is null are not indexed.
+ *
+ * @param <K> Key type.
+ * @param <V> Value type.
+ * @param <F> Field type.
+ */
+public class HashIndex<K, V, F> implements ContainerIndex<K, V> {
+    private final @NotNull Function<V, F> extractor;
+    private final @NotNull Map<F, Set<K>> keysByField = new HashMap<>();
+    private final @NotNull Map<K, F> fieldByKey = new HashMap<>(); // indexed value, even if the object changed since
+
+    /**
+     * Creates a new hash index.
+     *
+     * @param extractor Function that extracts the field from the object.
+     */
+    public HashIndex(@NotNull Function<V, F> extractor) {
+        this.extractor = extractor;
+    }
+
+    /**
+     * Creates a new hash index.
+     *
+     * @param extractor Function that extracts the field from the object.
+     * @param <K>       Key type.
+     * @param <V>       Value type.
+     * @param <F>       Field type.
+     * @return The index.
+     */
+    public static <K, V, F> @NotNull HashIndex<K, V, F> of(@NotNull Function<V, F> extractor) {
+        return new HashIndex<>(extractor);
+    }
+
+    @Override
+    public synchronized void put(@NotNull K key, @NotNull V value) {
+        F field = this.extractor.apply(value);
+        F previous = this.fieldByKey.get(key);
+        if (previous != null && previous.equals(field)) {
+            return; // nothing changed
+        }
+        this.remove(key);
+        if (field == null) {
+            return;
+        }
+        this.fieldByKey.put(key, field);
+        this.keysByField.computeIfAbsent(field, f -> new LinkedHashSet<>()).add(key);
+    }
+
+    @Override
+    public synchronized void remove(@NotNull K key) {
+        F previous = this.fieldByKey.remove(key);
+        if (previous == null) {
+            return;
+        }
+        Set<K> keys = this.keysByField.get(previous);
+        if (keys != null && keys.remove(key) && keys.isEmpty()) {
+            this.keysByField.remove(previous);
+        }
+    }
+
+    @Override
+    public synchronized void clear() {
+        this.keysByField.clear();
+        this.fieldByKey.clear();
+    }
+
+    /**
+     * Gets the keys of all objects with the given field value.
+     *
+     * @param field The field value.
+     * @return Copy of the keys, empty if there are none.
+     */
+    public synchronized @NotNull Set<K> get(@Nullable F field) {
+        Set<K> keys = this.keysByField.get(field);
+        return keys == null ? Collections.emptySet() : new LinkedHashSet<>(keys);
+    }
+
+    /**
+     * Counts the objects with the given field value.
+     *
+     * @param field The field value.
+     * @return The amount of objects.
+     */
+    public synchronized int count(@Nullable F field) {
+        Set<K> keys = this.keysByField.get(field);
+        return keys == null ? 0 : keys.size();
+    }
+
+    /**
+     * Gets all distinct field values.
+     *
+     * @return Copy of the field values.
+     */
+    public synchronized @NotNull Set<F> fields() {
+        return new HashSet<>(this.keysByField.keySet());
+    }
+}
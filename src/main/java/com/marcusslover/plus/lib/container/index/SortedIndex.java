@@ -0,0 +1,149 @@
+package com.marcusslover.plus.lib.container.index;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Index that keeps the keys sorted by a field of the objects.
+ * Range queries cost O(log n) plus the size of the result, top and bottom queries only the size of the result.
+ * Objects whose field is null are not indexed.
+ *
+ * @param <K> Key type.
+ * @param <V> Value type.
+ * @param <F> Field type.
+ */
+public class SortedIndex<K, V, F> implements ContainerIndex<K, V> {
+    private final @NotNull Function<V, F> extractor;
+    private final @NotNull TreeMap<F, Set<K>> keysByField;
+    private final @NotNull Map<K, F> fieldByKey = new HashMap<>(); // indexed value, even if the object changed since
+
+    /**
+     * Creates a new sorted index.
+     *
+     * @param extractor  Function that extracts the field from the object.
+     * @param comparator Order of the field values.
+     */
+    public SortedIndex(@NotNull Function<V, F> extractor, @NotNull Comparator<? super F> comparator) {
+        this.extractor = extractor;
+        this.keysByField = new TreeMap<>(comparator);
+    }
+
+    /**
+     * Creates a new sorted index in the natural order of the field.
+     *
+     * @param extractor Function that extracts the field from the object.
+     * @param <K>       Key type.
+     * @param <V>       Value type.
+     * @param <F>       Field type.
+     * @return The index.
+     */
+    public static <K, V, F extends Comparable<? super F>> @NotNull SortedIndex<K, V, F> of(@NotNull Function<V, F> extractor) {
+        return new SortedIndex<>(extractor, Comparator.naturalOrder());
+    }
+
+    @Override
+    public synchronized void put(@NotNull K key, @NotNull V value) {
+        F field = this.extractor.apply(value);
+        F previous = this.fieldByKey.get(key);
+        if (previous != null && field != null && this.keysByField.comparator().compare(previous, field) == 0) {
+            return; // nothing changed
+        }
+        this.remove(key);
+        if (field == null) {
+            return;
+        }
+        this.fieldByKey.put(key, field);
+        this.keysByField.computeIfAbsent(field, f -> new LinkedHashSet<>()).add(key);
+    }
+
+    @Override
+    public synchronized void remove(@NotNull K key) {
+        F previous = this.fieldByKey.remove(key);
+        if (previous == null) {
+            return;
+        }
+        Set<K> keys = this.keysByField.get(previous);
+        if (keys != null && keys.remove(key) && keys.isEmpty()) {
+            this.keysByField.remove(previous);
+        }
+    }
+
+    @Override
+    public synchronized void clear() {
+        this.keysByField.clear();
+        this.fieldByKey.clear();
+    }
+
+    /**
+     * Gets the keys with the highest field values, highest first.
+     *
+     * @param limit Maximum amount of keys.
+     * @return The keys.
+     */
+    public synchronized @NotNull List<K> top(int limit) {
+        return collect(this.keysByField.descendingMap().values(), limit);
+    }
+
+    /**
+     * Gets the keys with the lowest field values, lowest first.
+     *
+     * @param limit Maximum amount of keys.
+     * @return The keys.
+     */
+    public synchronized @NotNull List<K> bottom(int limit) {
+        return collect(this.keysByField.values(), limit);
+    }
+
+    /**
+     * Gets the keys whose field value is within the range, lowest first.
+     *
+     * @param from Lowest field value, inclusive, or null for no lower bound.
+     * @param to   Highest field value, inclusive, or null for no upper bound.
+     * @return The keys.
+     */
+    public synchronized @NotNull List<K> range(@Nullable F from, @Nullable F to) {
+        NavigableMap<F, Set<K>> range = this.keysByField;
+        if (from != null) {
+            range = range.tailMap(from, true);
+        }
+        if (to != null) {
+            range = range.headMap(to, true);
+        }
+        return collect(range.values(), Integer.MAX_VALUE);
+    }
+
+    /**
+     * Gets the indexed field value of the key.
+     *
+     * @param key Key of the object.
+     * @return The field value or null if the key is not indexed.
+     */
+    public synchronized @Nullable F field(@NotNull K key) {
+        return this.fieldByKey.get(key);
+    }
+
+    /**
+     * Gets the amount of indexed keys.
+     *
+     * @return The amount of keys.
+     */
+    public synchronized int size() {
+        return this.fieldByKey.size();
+    }
+
+    private static <K> @NotNull List<K> collect(@NotNull Collection<Set<K>> groups, int limit) {
+        List<K> result = new ArrayList<>(Math.min(limit, 64));
+        for (Set<K> keys : groups) {
+            for (K key : keys) {
+                if (result.size() >= limit) {
+                    return result;
+                }
+                result.add(key);
+            }
+        }
+        return result;
+    }
+}
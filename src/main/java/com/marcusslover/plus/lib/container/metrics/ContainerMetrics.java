@@ -0,0 +1,126 @@
+package com.marcusslover.plus.lib.container.metrics;
+
+import com.marcusslover.plus.lib.container.extra.FlushStats;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and latency histograms of a single container.
+ * <p>
+ * Metrics are disabled by default, see {@link com.marcusslover.plus.lib.container.AbstractContainer#enableMetrics()}.
+ * While disabled, the container only pays for a null check. All counters are lock-free
+ * and can be updated from any thread.
+ * </p>
+ * <p>
+ * Written and skipped objects are not counted here, they come from the {@link FlushStats}
+ * of the container, which are always counted.
+ * </p>
+ */
+public final class ContainerMetrics {
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder cacheMisses = new LongAdder();
+    private final LongAdder bytesRead = new LongAdder();
+    private final LatencyHistogram reads = new LatencyHistogram();
+    private final LatencyHistogram writes = new LatencyHistogram();
+    private final LongAdder loadAllNanos = new LongAdder();
+    private final LongAdder loadAllObjects = new LongAdder();
+
+    /**
+     * Records a lookup that was answered by the cache.
+     */
+    public void recordHit() {
+        this.cacheHits.increment();
+    }
+
+    /**
+     * Records a lookup that had to read the disk.
+     */
+    public void recordMiss() {
+        this.cacheMisses.increment();
+    }
+
+    /**
+     * Records a read of one object, including its deserialization.
+     *
+     * @param nanos Duration of the read.
+     * @param bytes Size of the content, 0 if there was no file.
+     */
+    public void recordRead(long nanos, long bytes) {
+        this.reads.record(nanos);
+        this.bytesRead.add(bytes);
+    }
+
+    /**
+     * Records the duration of a written batch of objects.
+     * The objects themselves are counted by {@link FlushStats#recordWritten(int, long)}.
+     *
+     * @param nanos Duration of the write.
+     */
+    public void recordWrite(long nanos) {
+        this.writes.record(nanos);
+    }
+
+    /**
+     * Records a full load of the container.
+     *
+     * @param nanos   Duration of the load.
+     * @param objects Amount of loaded objects.
+     */
+    public void recordLoadAll(long nanos, long objects) {
+        this.loadAllNanos.add(nanos);
+        this.loadAllObjects.add(objects);
+    }
+
+    /**
+     * Resets all counters and histograms.
+     */
+    public void reset() {
+        this.cacheHits.reset();
+        this.cacheMisses.reset();
+        this.bytesRead.reset();
+        this.reads.reset();
+        this.writes.reset();
+        this.loadAllNanos.reset();
+        this.loadAllObjects.reset();
+    }
+
+    /**
+     * Takes a snapshot of all metrics.
+     * Snapshots are plain records and can be serialized with Gson.
+     *
+     * @param cachedEntries Amount of objects currently in the cache.
+     * @param flushStats    Written and skipped objects of the container.
+     * @return The snapshot.
+     */
+    public @NotNull Snapshot snapshot(long cachedEntries, @NotNull FlushStats flushStats) {
+        long hits = this.cacheHits.sum();
+        long misses = this.cacheMisses.sum();
+        return new Snapshot(hits, misses, hits + misses == 0 ? 0 : (double) hits / (hits + misses), cachedEntries,
+                this.bytesRead.sum(), flushStats.bytes(), flushStats.written(), flushStats.skipped(),
+                this.reads.snapshot(), this.writes.snapshot(),
+                this.loadAllNanos.sum() / 1_000_000, this.loadAllObjects.sum());
+    }
+
+    /**
+     * Metrics of a container at one point in time.
+     *
+     * @param cacheHits      Lookups answered by the cache.
+     * @param cacheMisses    Lookups that had to read the disk.
+     * @param hitRate        Share of lookups answered by the cache, from 0 to 1.
+     * @param cachedEntries  Objects currently in the cache.
+     * @param bytesRead      Bytes read from the disk.
+     * @param bytesWritten   Bytes written to the disk.
+     * @param written        Objects written to the disk.
+     * @param skipped        Objects not written because they did not change.
+     * @param reads          Latency of single reads, deserialization included.
+     * @param writes         Latency of written batches, serialization excluded.
+     * @param loadAllMillis  Time spent loading the whole container.
+     * @param loadAllObjects Objects loaded by loading the whole container.
+     */
+    public record Snapshot(long cacheHits, long cacheMisses, double hitRate, long cachedEntries,
+                           long bytesRead, long bytesWritten, long written, long skipped,
+                           @NotNull LatencyHistogram.Snapshot reads, @NotNull LatencyHistogram.Snapshot writes,
+                           long loadAllMillis, long loadAllObjects) {
+    }
+}
@@ -0,0 +1,117 @@
+package com.marcusslover.plus.lib.container.storage;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Crash-safe file operations used by the containers.
+ * <p>
+ * Data is always written to a temporary file first and then moved over the target,
+ * so the target file is either the old version or the new version, never a truncated one.
+ * </p>
+ */
+public final class AtomicFiles {
+    public static final String TEMP_SUFFIX = ".tmp";
+    private static final AtomicLong TEMP_COUNTER = new AtomicLong();
+    private static final Set<StandardOpenOption> TEMP_OPTIONS = EnumSet.of(
+        StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+
+    private AtomicFiles() {
+    }
+
+    /**
+     * Atomically replaces the target file with the given data.
+     * Missing parent directories are created.
+     *
+     * @param target The target file.
+     * @param data   The data to write.
+     * @param sync   True to fsync the data before the move and the directory after it, false to leave it to the OS.
+     * @throws IOException If the file could not be written.
+     */
+    public static void write(@NotNull Path target, byte @NotNull [] data, boolean sync) throws IOException {
+        // unique per call, so concurrent writers never share a temporary file; a leftover of a crash is truncated
+        Path temp = target.resolveSibling("." + target.getFileName() + "." + TEMP_COUNTER.incrementAndGet() + TEMP_SUFFIX);
+        try {
+            try (FileChannel channel = openTemp(temp)) { // the only open of the entry, the whole content in one write call
+                ByteBuffer buffer = ByteBuffer.wrap(data);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                if (sync) {
+                    channel.force(true);
+                }
+            }
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING); // best effort on exotic file systems
+            }
+            if (sync) {
+                syncDirectory(target.getParent()); // the move itself is only durable once the directory is synced
+            }
+        } finally {
+            Files.deleteIfExists(temp); // only exists if something went wrong
+        }
+    }
+
+    private static @NotNull FileChannel openTemp(@NotNull Path temp) throws IOException {
+        try {
+            return FileChannel.open(temp, TEMP_OPTIONS);
+        } catch (NoSuchFileException e) { // first file of a new directory
+            Files.createDirectories(temp.getParent());
+            return FileChannel.open(temp, TEMP_OPTIONS);
+        }
+    }
+
+    /**
+     * Forces the content of an already written file to the disk.
+     *
+     * @param file The file.
+     * @throws IOException If the file could not be synced.
+     */
+    public static void sync(@NotNull Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Forces the entries of a directory to the disk, so files moved into it or deleted from it survive a crash.
+     * Does nothing on platforms that cannot open directories, like Windows.
+     *
+     * @param directory The directory.
+     * @throws IOException If the directory could not be synced.
+     */
+    public static void syncDirectory(@NotNull Path directory) throws IOException {
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(directory, StandardOpenOption.READ);
+        } catch (AccessDeniedException | NoSuchFileException e) {
+            return; // not supported, or nothing was ever written there
+        }
+        try (channel) {
+            channel.force(true);
+        } catch (IOException e) {
+            if (!Files.isDirectory(directory)) {
+                throw e;
+            }
+            // some file systems refuse to sync directories, their entries are as durable as it gets
+        }
+    }
+}
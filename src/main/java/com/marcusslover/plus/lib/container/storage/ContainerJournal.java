@@ -0,0 +1,228 @@
+package com.marcusslover.plus.lib.container.storage;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Append-only write-ahead journal of a container folder.
+ * <p>
+ * Every batch of writes is first appended to the journal and synced with a single fsync.
+ * Only then are the files replaced, without syncing each of them.
+ * Once the journal grows past its checkpoint size, all files written since the last
+ * checkpoint and their directories are synced once and the journal is truncated.
+ * If the server crashes in between, {@link #replay(Path)} restores the files on the next start.
+ * </p>
+ */
+public final class ContainerJournal implements Closeable {
+    public static final String FILE_NAME = ".journal";
+
+    private final @NotNull Path folder;
+    private final @NotNull Function<String, Path> resolver;
+    private final long checkpointSize;
+    private final @NotNull FileChannel channel;
+    private final @NotNull Set<Path> unsynced = new HashSet<>();
+    private final @NotNull Set<Path> unsyncedDirectories = new HashSet<>(); // moves and deletes, one per shard with sharding
+
+    /**
+     * Opens a new journal in the given folder.
+     * Call {@link #replay(Path)} before opening, otherwise the previous journal is lost.
+     *
+     * @param folder         The container folder.
+     * @param checkpointSize Size of the journal in bytes after which a checkpoint happens.
+     * @throws IOException If the journal could not be opened.
+     */
+    public ContainerJournal(@NotNull Path folder, long checkpointSize) throws IOException {
+        this(folder, folder::resolve, checkpointSize);
+    }
+
+    /**
+     * Opens a new journal in the given folder.
+     * Call {@link #replay(Path, Function)} before opening, otherwise the previous journal is lost.
+     *
+     * @param folder         The container folder.
+     * @param resolver       Resolves the file of a record name.
+     * @param checkpointSize Size of the journal in bytes after which a checkpoint happens.
+     * @throws IOException If the journal could not be opened.
+     */
+    public ContainerJournal(@NotNull Path folder, @NotNull Function<String, Path> resolver, long checkpointSize) throws IOException {
+        this.folder = folder;
+        this.resolver = resolver;
+        this.checkpointSize = checkpointSize;
+        this.channel = FileChannel.open(folder.resolve(FILE_NAME),
+            StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    /**
+     * Replays the journal left in the given folder, if there is any.
+     * Records are applied in order, the torn tail of an interrupted append is ignored.
+     *
+     * @param folder The container folder.
+     * @return Amount of files restored.
+     * @throws IOException If the files could not be restored.
+     */
+    public static int replay(@NotNull Path folder) throws IOException {
+        return replay(folder, folder::resolve);
+    }
+
+    /**
+     * Replays the journal left in the given folder, if there is any.
+     *
+     * @param folder   The container folder.
+     * @param resolver Resolves the file of a record name.
+     * @return Amount of files restored.
+     * @throws IOException If the files could not be restored.
+     */
+    public static int replay(@NotNull Path folder, @NotNull Function<String, Path> resolver) throws IOException {
+        Map<String, byte[]> latest = read(folder);
+        if (latest == null) {
+            return 0;
+        }
+        Set<Path> directories = new HashSet<>();
+        for (Map.Entry<String, byte[]> entry : latest.entrySet()) {
+            Path target = resolver.apply(entry.getKey());
+            if (entry.getValue() == null) {
+                Files.deleteIfExists(target);
+                directories.add(target.getParent());
+            } else {
+                AtomicFiles.write(target, entry.getValue(), true); // syncs its directory
+            }
+        }
+        for (Path directory : directories) {
+            AtomicFiles.syncDirectory(directory);
+        }
+        Files.delete(folder.resolve(FILE_NAME));
+        return latest.size();
+    }
+
+    /**
+     * Reads the journal left in the given folder without applying it.
+     *
+     * @param folder The container folder.
+     * @return The last record of every name in journal order, a null value for a deletion,
+     * or null if there is no journal.
+     * @throws IOException If the journal could not be read.
+     */
+    static @Nullable Map<String, byte[]> read(@NotNull Path folder) throws IOException {
+        Path path = folder.resolve(FILE_NAME);
+        if (!Files.exists(path)) {
+            return null;
+        }
+        Map<String, byte[]> latest = new LinkedHashMap<>(); // last record wins
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            LogRecords.Entry entry;
+            while ((entry = LogRecords.read(input)) != null) {
+                latest.put(entry.name(), entry.data());
+            }
+        }
+        return latest;
+    }
+
+    /**
+     * Commits a batch of records.
+     * <p>
+     * The records are appended and synced first, then the files are replaced.
+     * A record with null data deletes the file.
+     * </p>
+     *
+     * @param records The records to commit.
+     * @throws IOException If the batch could not be committed.
+     */
+    public synchronized void commit(@NotNull List<@NotNull Record> records) throws IOException {
+        if (records.isEmpty()) {
+            return;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream output = new DataOutputStream(bytes)) {
+            for (Record record : records) {
+                LogRecords.write(output, record.name().getBytes(StandardCharsets.UTF_8), record.data());
+            }
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+        while (buffer.hasRemaining()) {
+            this.channel.write(buffer);
+        }
+        this.channel.force(false); // the only fsync of the whole batch
+
+        for (Record record : records) {
+            Path target = this.resolver.apply(record.name());
+            if (record.data() == null) {
+                Files.deleteIfExists(target);
+                this.unsynced.remove(target);
+            } else {
+                AtomicFiles.write(target, record.data(), false);
+                this.unsynced.add(target);
+            }
+            this.unsyncedDirectories.add(target.getParent());
+        }
+
+        if (this.channel.size() >= this.checkpointSize) {
+            this.checkpoint();
+        }
+    }
+
+    /**
+     * Syncs all files written since the last checkpoint and truncates the journal.
+     * <p>
+     * The directories are synced as well, otherwise a crash could undo the moves and deletes
+     * of the files while the journal that would redo them is already gone.
+     * </p>
+     *
+     * @throws IOException If the files could not be synced.
+     */
+    public synchronized void checkpoint() throws IOException {
+        for (Path path : this.unsynced) {
+            AtomicFiles.sync(path);
+        }
+        for (Path directory : this.unsyncedDirectories) {
+            AtomicFiles.syncDirectory(directory);
+        }
+        this.unsynced.clear();
+        this.unsyncedDirectories.clear();
+        this.channel.truncate(0);
+        this.channel.force(true);
+    }
+
+    /**
+     * Checkpoints and closes the journal.
+     * The journal file is removed since everything is on disk.
+     *
+     * @throws IOException If the journal could not be closed.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (!this.channel.isOpen()) {
+            return;
+        }
+        this.checkpoint();
+        this.channel.close();
+        Files.deleteIfExists(this.folder.resolve(FILE_NAME));
+    }
+
+    /**
+     * Represents one write of a file.
+     *
+     * @param name Name of the file relative to the container folder.
+     * @param data Content of the file or null if the file is deleted.
+     */
+    public record Record(@NotNull String name, byte @Nullable [] data) {
+    }
+}
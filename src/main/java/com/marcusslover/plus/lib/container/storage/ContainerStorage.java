@@ -0,0 +1,175 @@
+package com.marcusslover.plus.lib.container.storage;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+/**
+ * Backend that stores the content of container entries by their name.
+ * <p>
+ * Names are the file names of the entries, including the extension of the codec.
+ * The default backend is {@link FileStorage} which keeps one file per entry.
+ * {@link InMemoryStorage} keeps everything in memory, as a stand-in for a shared store in tests.
+ * </p>
+ * <p>
+ * Every entry has a version, which changes whenever its content changes. Conditional writes,
+ * see {@link #compareAndWrite(Map, Map)}, let several writers share a store without losing updates.
+ * By default, the version is derived from the content, see {@link #contentVersion(byte[])}.
+ * </p>
+ */
+public interface ContainerStorage extends Closeable {
+    /**
+     * Version of entries that do not exist.
+     */
+    long NO_VERSION = 0;
+
+    /**
+     * Reads the content of the entry.
+     *
+     * @param name Name of the entry.
+     * @return The content or null if the entry does not exist.
+     * @throws IOException If the entry could not be read.
+     */
+    byte @Nullable [] read(@NotNull String name) throws IOException;
+
+    /**
+     * Writes a batch of entries.
+     * Null content deletes the entry.
+     *
+     * @param batch Names and contents of the entries.
+     * @throws IOException If the batch could not be written.
+     */
+    void write(@NotNull Map<String, byte[]> batch) throws IOException;
+
+    /**
+     * Reads the content of several entries.
+     * Backends with a round trip per call should fetch all of them at once.
+     *
+     * @param names Names of the entries.
+     * @return Contents by name, entries that do not exist are missing.
+     * @throws IOException If the entries could not be read.
+     */
+    default @NotNull Map<String, byte[]> readAll(@NotNull Collection<String> names) throws IOException {
+        Map<String, byte[]> result = new HashMap<>(names.size());
+        for (String name : names) {
+            byte[] data = this.read(name);
+            if (data != null) {
+                result.put(name, data);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Deletes several entries as one batch.
+     *
+     * @param names Names of the entries.
+     * @throws IOException If the entries could not be deleted.
+     */
+    default void delete(@NotNull Collection<String> names) throws IOException {
+        Map<String, byte[]> batch = new HashMap<>(names.size());
+        names.forEach(name -> batch.put(name, null));
+        this.write(batch);
+    }
+
+    /**
+     * Reads the content of the entry together with its version.
+     *
+     * @param name Name of the entry.
+     * @return The content and the version, {@link #NO_VERSION} if the entry does not exist.
+     * @throws IOException If the entry could not be read.
+     */
+    default @NotNull Versioned readVersioned(@NotNull String name) throws IOException {
+        byte[] data = this.read(name);
+        return new Versioned(data, data == null ? NO_VERSION : contentVersion(data));
+    }
+
+    /**
+     * Writes a batch only if the entries still have the expected versions.
+     * <p>
+     * Either the whole batch is written, or nothing if any version differs, which means someone else
+     * changed the entry since it was read. Read it again, apply the change and retry.
+     * Use {@link #NO_VERSION} to expect that an entry does not exist yet.
+     * </p>
+     * <p>
+     * By default, conditional writes are atomic against each other within this storage instance,
+     * backends that do not synchronize their plain writes on the instance must override this function.
+     * Backends shared by several servers must check the versions on the server side.
+     * Map containers write conditionally once they have a
+     * {@link com.marcusslover.plus.lib.container.extra.WriteConflictHandler}.
+     * </p>
+     *
+     * @param batch            Names and contents of the entries, null content deletes the entry.
+     * @param expectedVersions Expected versions by name, entries without an expectation are written anyway.
+     * @return True if the batch was written, false on a conflict.
+     * @throws IOException If the batch could not be written.
+     */
+    default boolean compareAndWrite(@NotNull Map<String, byte[]> batch, @NotNull Map<String, Long> expectedVersions) throws IOException {
+        synchronized (this) {
+            for (Map.Entry<String, Long> entry : expectedVersions.entrySet()) {
+                if (this.readVersioned(entry.getKey()).version() != entry.getValue()) {
+                    return false;
+                }
+            }
+            this.write(batch);
+            return true;
+        }
+    }
+
+    /**
+     * Checks if the entry exists.
+     *
+     * @param name Name of the entry.
+     * @return True if the entry exists.
+     * @throws IOException If the storage could not be accessed.
+     */
+    boolean exists(@NotNull String name) throws IOException;
+
+    /**
+     * Visits the names of all entries.
+     *
+     * @param action Action called for each name.
+     * @throws IOException If the storage could not be listed.
+     */
+    void forEachName(@NotNull Consumer<@NotNull String> action) throws IOException;
+
+    /**
+     * Flushes and releases the storage.
+     *
+     * @throws IOException If the storage could not be closed.
+     */
+    @Override
+    default void close() throws IOException {
+        // nothing to release by default
+    }
+
+    /**
+     * Computes the version of the content, a 64-bit hash that is never {@link #NO_VERSION}.
+     *
+     * @param data The content.
+     * @return The version.
+     */
+    static long contentVersion(byte @NotNull [] data) {
+        CRC32C crc = new CRC32C();
+        crc.update(data);
+        long version = (long) Arrays.hashCode(data) << 32 | crc.getValue();
+        return version == NO_VERSION ? 1 : version;
+    }
+
+    /**
+     * Content of an entry with its version.
+     *
+     * @param data    The content or null if the entry does not exist.
+     * @param version The version or {@link #NO_VERSION} if the entry does not exist.
+     */
+    record Versioned(byte @Nullable [] data, long version) {
+    }
+}
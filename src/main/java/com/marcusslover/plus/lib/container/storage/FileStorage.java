@@ -0,0 +1,165 @@
+package com.marcusslover.plus.lib.container.storage;
+
+import com.marcusslover.plus.lib.common.ReadWriteLock;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Default storage that keeps one file per entry in the container folder.
+ * <p>
+ * Files are replaced atomically. Without a journal, every file is synced on its own.
+ * With a journal, see {@link #openJournal(long)}, a whole batch costs a single fsync.
+ * </p>
+ * <p>
+ * Plain writes run concurrently, a conditional write excludes all other writes while it compares the versions.
+ * </p>
+ */
+public class FileStorage implements ContainerStorage {
+    protected final @NotNull Path folder;
+    protected volatile @Nullable ContainerJournal journal = null;
+    private final ReadWriteLock writeLock = new ReadWriteLock(); // shared by writes, exclusive for conditional writes
+
+    /**
+     * Creates a new file storage.
+     *
+     * @param folder The container folder.
+     */
+    public FileStorage(@NotNull Path folder) {
+        this.folder = folder;
+    }
+
+    /**
+     * Replays the journal left behind by a crash and opens a new one.
+     *
+     * @param checkpointSize Size of the journal in bytes after which a checkpoint happens.
+     * @return Amount of files restored from the previous journal.
+     * @throws IOException If the journal could not be opened.
+     */
+    public synchronized int openJournal(long checkpointSize) throws IOException {
+        if (this.journal != null) {
+            return 0; // already open
+        }
+        int restored = ContainerJournal.replay(this.folder, this::resolve);
+        this.journal = new ContainerJournal(this.folder, this::resolve, checkpointSize);
+        return restored;
+    }
+
+    /**
+     * Checkpoints and closes the journal.
+     *
+     * @throws IOException If the journal could not be closed.
+     */
+    public synchronized void closeJournal() throws IOException {
+        ContainerJournal journal = this.journal;
+        if (journal == null) {
+            return;
+        }
+        this.journal = null;
+        journal.close();
+    }
+
+    /**
+     * Resolves the file of the entry.
+     *
+     * @param name Name of the entry.
+     * @return The file.
+     */
+    protected @NotNull Path resolve(@NotNull String name) {
+        return this.folder.resolve(name);
+    }
+
+    @Override
+    public byte @Nullable [] read(@NotNull String name) throws IOException {
+        try {
+            return Files.readAllBytes(this.resolve(name));
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public void write(@NotNull Map<String, byte[]> batch) throws IOException {
+        this.writeLock.readLock();
+        try {
+            this.writeUnlocked(batch);
+        } finally {
+            this.writeLock.readUnlock();
+        }
+    }
+
+    @Override
+    public boolean compareAndWrite(@NotNull Map<String, byte[]> batch, @NotNull Map<String, Long> expectedVersions) throws IOException {
+        this.writeLock.writeLock();
+        try {
+            for (Map.Entry<String, Long> entry : expectedVersions.entrySet()) {
+                if (this.readVersioned(entry.getKey()).version() != entry.getValue()) {
+                    return false;
+                }
+            }
+            this.writeUnlocked(batch);
+            return true;
+        } finally {
+            this.writeLock.writeUnlock();
+        }
+    }
+
+    private void writeUnlocked(@NotNull Map<String, byte[]> batch) throws IOException {
+        ContainerJournal journal = this.journal;
+        if (journal != null) {
+            List<ContainerJournal.Record> records = new ArrayList<>(batch.size());
+            batch.forEach((name, data) -> records.add(new ContainerJournal.Record(name, data)));
+            journal.commit(records);
+            return;
+        }
+        for (Map.Entry<String, byte[]> entry : batch.entrySet()) {
+            Path path = this.resolve(entry.getKey());
+            if (entry.getValue() == null) {
+                Files.deleteIfExists(path);
+            } else {
+                AtomicFiles.write(path, entry.getValue(), true);
+            }
+        }
+    }
+
+    @Override
+    public boolean exists(@NotNull String name) {
+        return Files.exists(this.resolve(name));
+    }
+
+    @Override
+    public void forEachName(@NotNull Consumer<@NotNull String> action) throws IOException {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(this.folder, FileStorage::isEntry)) {
+            for (Path path : stream) {
+                if (Files.isRegularFile(path)) { // folders, for example of snapshots, are no entries
+                    action.accept(path.getFileName().toString());
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.closeJournal();
+    }
+
+    /**
+     * Checks if the file holds an entry, skipping the journal and temporary files.
+     *
+     * @param path The file.
+     * @return True if the file holds an entry.
+     */
+    protected static boolean isEntry(@NotNull Path path) {
+        String name = path.getFileName().toString();
+        return !name.startsWith(".") && !name.endsWith(AtomicFiles.TEMP_SUFFIX);
+    }
+}
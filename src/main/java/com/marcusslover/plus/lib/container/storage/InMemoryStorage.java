@@ -0,0 +1,77 @@
+package com.marcusslover.plus.lib.container.storage;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Storage that keeps all entries in memory, nothing survives a restart.
+ * <p>
+ * Meant as an in-process stand-in for a key-value store shared by several servers,
+ * for example in tests. Contents are copied in and out, just like over a network.
+ * Versions are derived from the content like in every other storage, see {@link ContainerStorage#contentVersion(byte[])},
+ * so a container can expect the version of the content it read last. All writes are atomic, conditional writes included.
+ * </p>
+ */
+public class InMemoryStorage implements ContainerStorage {
+    private final @NotNull Map<String, Versioned> entries = new ConcurrentHashMap<>();
+
+    @Override
+    public byte @Nullable [] read(@NotNull String name) {
+        Versioned entry = this.entries.get(name);
+        return entry == null ? null : entry.data().clone();
+    }
+
+    @Override
+    public synchronized void write(@NotNull Map<String, byte[]> batch) {
+        batch.forEach((name, data) -> {
+            if (data == null) {
+                this.entries.remove(name);
+            } else {
+                this.entries.put(name, new Versioned(data.clone(), ContainerStorage.contentVersion(data)));
+            }
+        });
+    }
+
+    @Override
+    public @NotNull Versioned readVersioned(@NotNull String name) {
+        Versioned entry = this.entries.get(name);
+        return entry == null ? new Versioned(null, NO_VERSION) : new Versioned(entry.data().clone(), entry.version());
+    }
+
+    @Override
+    public synchronized boolean compareAndWrite(@NotNull Map<String, byte[]> batch, @NotNull Map<String, Long> expectedVersions) {
+        for (Map.Entry<String, Long> expected : expectedVersions.entrySet()) {
+            Versioned entry = this.entries.get(expected.getKey());
+            long version = entry == null ? NO_VERSION : entry.version();
+            if (version != expected.getValue()) {
+                return false;
+            }
+        }
+        this.write(batch);
+        return true;
+    }
+
+    @Override
+    public boolean exists(@NotNull String name) {
+        return this.entries.containsKey(name);
+    }
+
+    @Override
+    public void forEachName(@NotNull Consumer<@NotNull String> action) {
+        new ArrayList<>(this.entries.keySet()).forEach(action); // entries may change while visiting
+    }
+
+    /**
+     * Gets the amount of stored entries.
+     *
+     * @return The amount of entries.
+     */
+    public int size() {
+        return this.entries.size();
+    }
+}
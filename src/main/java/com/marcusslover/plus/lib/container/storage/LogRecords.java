@@ -0,0 +1,99 @@
+package com.marcusslover.plus.lib.container.storage;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+
+/**
+ * Layout of the records shared by the journal and the segmented storage.
+ * <p>
+ * Each record is: name length, name, data length (-1 for a deletion), data, CRC32 of name and data.
+ * </p>
+ */
+final class LogRecords {
+    static final int MAX_NAME_LENGTH = 4096;
+
+    private LogRecords() {
+    }
+
+    static int size(byte @NotNull [] name, byte @Nullable [] data) {
+        return Integer.BYTES + name.length + Integer.BYTES + (data == null ? 0 : data.length) + Long.BYTES;
+    }
+
+    static int dataOffset(byte @NotNull [] name) {
+        return Integer.BYTES + name.length + Integer.BYTES;
+    }
+
+    static void write(@NotNull DataOutputStream output, byte @NotNull [] name, byte @Nullable [] data) throws IOException {
+        output.writeInt(name.length);
+        output.write(name);
+        if (data == null) {
+            output.writeInt(-1);
+        } else {
+            output.writeInt(data.length);
+            output.write(data);
+        }
+        output.writeLong(checksum(name, data));
+    }
+
+    /**
+     * Reads the next record.
+     *
+     * @param input The input.
+     * @return The record or null at the end of the log or at a torn write.
+     * @throws IOException If the log could not be read.
+     */
+    static @Nullable Entry read(@NotNull DataInputStream input) throws IOException {
+        try {
+            int nameLength = input.readInt();
+            if (nameLength <= 0 || nameLength > MAX_NAME_LENGTH) {
+                return null; // garbage
+            }
+            byte[] name = input.readNBytes(nameLength);
+            if (name.length != nameLength) {
+                return null; // torn write
+            }
+            int dataLength = input.readInt();
+            byte[] data = null;
+            if (dataLength >= 0) {
+                data = input.readNBytes(dataLength);
+                if (data.length != dataLength) {
+                    return null; // torn write
+                }
+            }
+            long checksum = input.readLong();
+            if (checksum != checksum(name, data)) {
+                return null; // torn write
+            }
+            return new Entry(new String(name, StandardCharsets.UTF_8), data, size(name, data), dataOffset(name));
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    private static long checksum(byte @NotNull [] name, byte @Nullable [] data) {
+        CRC32 crc = new CRC32();
+        crc.update(name);
+        if (data != null) {
+            crc.update(data);
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * A record read from a log.
+     *
+     * @param name       Name of the entry.
+     * @param data       Content of the entry or null for a deletion.
+     * @param size       Size of the whole record in bytes.
+     * @param dataOffset Offset of the data from the start of the record.
+     */
+    record Entry(@NotNull String name, byte @Nullable [] data, int size, int dataOffset) {
+    }
+}
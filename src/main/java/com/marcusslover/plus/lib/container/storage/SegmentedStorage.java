@@ -0,0 +1,468 @@
+package com.marcusslover.plus.lib.container.storage;
+
+import com.marcusslover.plus.lib.container.codec.ContainerCodec;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Storage that appends all entries to a few large segment files instead of one file per entry.
+ * <p>
+ * An in-memory index maps every name to the position of its latest record, so reads are a single
+ * positional read. Each batch of writes is appended to the active segment and synced once.
+ * Once the active segment is full, a new one is started. A background task compacts the full
+ * segments as soon as more than half of their bytes belong to overwritten or deleted entries.
+ * </p>
+ * <p>
+ * Loose entry files found in the folder, for example from a previous {@link FileStorage},
+ * are imported into the log when the storage is opened, including the shards of a sharded layout.
+ * Only files in one of the given extensions are entries, anything else is left alone.
+ * A journal left by a {@link FileStorage} is applied on top of them, then deleted.
+ * </p>
+ */
+public class SegmentedStorage implements ContainerStorage {
+    public static final long DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+    private static final String PREFIX = "segment-";
+    private static final String SUFFIX = ".log";
+    private static final Logger LOGGER = Logger.getLogger(SegmentedStorage.class.getName());
+
+    protected final @NotNull Path folder;
+    protected final long segmentSize;
+    private final @NotNull Map<String, Location> index = new HashMap<>();
+    private final @NotNull NavigableMap<Integer, Segment> segments = new TreeMap<>();
+    private final @NotNull ScheduledExecutorService compactor;
+    private @NotNull Segment active;
+    private boolean compacting = false;
+
+    /**
+     * Opens a segmented storage with the default segment size.
+     *
+     * @param folder The container folder.
+     * @throws IOException If the storage could not be opened.
+     */
+    public SegmentedStorage(@NotNull Path folder) throws IOException {
+        this(folder, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * Opens a segmented storage that imports the loose files of the built-in codecs.
+     *
+     * @param folder      The container folder.
+     * @param segmentSize Size in bytes after which a new segment is started.
+     * @throws IOException If the storage could not be opened.
+     */
+    public SegmentedStorage(@NotNull Path folder, long segmentSize) throws IOException {
+        this(folder, segmentSize, ContainerCodec.EXTENSIONS);
+    }
+
+    /**
+     * Opens a segmented storage.
+     *
+     * @param folder      The container folder.
+     * @param segmentSize Size in bytes after which a new segment is started.
+     * @param extensions  Extensions of the loose entry files to import.
+     * @throws IOException If the storage could not be opened.
+     */
+    public SegmentedStorage(@NotNull Path folder, long segmentSize, @NotNull Collection<String> extensions) throws IOException {
+        this.folder = folder;
+        this.segmentSize = segmentSize;
+
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(folder, PREFIX + "*" + SUFFIX)) {
+            for (Path path : stream) {
+                String fileName = path.getFileName().toString();
+                int id = Integer.parseInt(fileName.substring(PREFIX.length(), fileName.length() - SUFFIX.length()));
+                this.segments.put(id, new Segment(id, path));
+            }
+        }
+        for (Segment segment : this.segments.values()) {
+            this.scan(segment); // oldest first, so the latest record wins
+        }
+        int next = this.segments.isEmpty() ? 1 : this.segments.lastKey() + 1;
+        this.active = this.segments.isEmpty() ? this.createSegment(next) : this.segments.lastEntry().getValue();
+
+        this.importLooseFiles(extensions);
+
+        this.compactor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "Plus-Compactor-" + folder.getFileName());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.compactor.scheduleWithFixedDelay(this::compactIfNeeded, 1, 1, TimeUnit.MINUTES);
+    }
+
+    private @NotNull Segment createSegment(int id) throws IOException {
+        Segment segment = new Segment(id, this.folder.resolve(PREFIX + String.format("%08d", id) + SUFFIX));
+        this.segments.put(id, segment);
+        return segment;
+    }
+
+    private void scan(@NotNull Segment segment) throws IOException {
+        long position = 0;
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(segment.path)))) {
+            LogRecords.Entry entry;
+            while ((entry = LogRecords.read(input)) != null) {
+                this.apply(entry.name(), entry.data() == null ? null : new Location(segment, position + entry.dataOffset(), entry.data().length, entry.size()));
+                if (entry.data() == null) {
+                    segment.garbage += entry.size(); // a deletion is never read
+                }
+                position += entry.size();
+            }
+        }
+        if (position < segment.channel.size()) {
+            LOGGER.warning("Truncating torn tail of " + segment.path);
+            segment.channel.truncate(position);
+        }
+        segment.size = position;
+    }
+
+    private void apply(@NotNull String name, @Nullable Location location) {
+        Location previous = location == null ? this.index.remove(name) : this.index.put(name, location);
+        if (previous != null) {
+            previous.segment.garbage += previous.recordSize;
+        }
+    }
+
+    private void importLooseFiles(@NotNull Collection<String> extensions) throws IOException {
+        Map<String, byte[]> journaled = ContainerJournal.read(this.folder); // newer than the files
+        Map<String, byte[]> batch = new HashMap<>();
+        List<Path> imported = new ArrayList<>();
+        List<Path> shards = new ArrayList<>();
+        this.collectLooseFiles(this.folder, 0, extensions, imported, shards);
+        for (Path path : imported) {
+            String name = path.getFileName().toString();
+            if (!this.index.containsKey(name) && (journaled == null || !journaled.containsKey(name))) { // the log is newer
+                batch.put(name, Files.readAllBytes(path));
+            }
+            if (batch.size() >= 512) {
+                this.write(batch);
+                batch.clear();
+            }
+        }
+        if (journaled != null) {
+            journaled.forEach((name, data) -> {
+                if (data != null && !this.index.containsKey(name)) {
+                    batch.put(name, data);
+                }
+            });
+        }
+        this.write(batch);
+        if (journaled != null) {
+            Files.delete(this.folder.resolve(ContainerJournal.FILE_NAME));
+        }
+        for (Path path : imported) {
+            Files.delete(path);
+        }
+        for (Path shard : shards) { // deepest first
+            try {
+                Files.delete(shard);
+            } catch (DirectoryNotEmptyException e) {
+                // holds something that is no entry
+            }
+        }
+        if (!imported.isEmpty() || journaled != null) {
+            LOGGER.info("Imported " + imported.size() + " files" + (journaled != null ? " and a journal" : "")
+                + " into the segmented storage of " + this.folder);
+        }
+    }
+
+    /**
+     * Collects the files of the plain or sharded file layout, see {@link ShardedFileStorage}.
+     * Other directories, for example of snapshots, are skipped.
+     */
+    private void collectLooseFiles(@NotNull Path directory, int depth, @NotNull Collection<String> extensions,
+                                   @NotNull List<Path> files, @NotNull List<Path> shards) throws IOException {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, FileStorage::isEntry)) {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                if (Files.isRegularFile(path)) {
+                    if (extensions.stream().anyMatch(name::endsWith)) { // no segment or foreign file
+                        files.add(path);
+                    }
+                } else if (depth < ShardedFileStorage.MAX_LEVELS && ShardedFileStorage.isShard(path)) {
+                    this.collectLooseFiles(path, depth + 1, extensions, files, shards);
+                    shards.add(path); // after its own shards
+                }
+            }
+        }
+    }
+
+    @Override
+    public byte @Nullable [] read(@NotNull String name) throws IOException {
+        for (int attempt = 0; ; attempt++) {
+            Location location;
+            synchronized (this) {
+                location = this.index.get(name);
+            }
+            if (location == null) {
+                return null;
+            }
+            try {
+                return readData(location);
+            } catch (ClosedChannelException e) {
+                if (attempt > 0) {
+                    throw e;
+                }
+                // the segment was compacted in the meantime, look the entry up again
+            }
+        }
+    }
+
+    private static byte @NotNull [] readData(@NotNull Location location) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(location.length);
+        while (buffer.hasRemaining()) {
+            if (location.segment.channel.read(buffer, location.position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of segment " + location.segment.path);
+            }
+        }
+        return buffer.array();
+    }
+
+    @Override
+    public synchronized void write(@NotNull Map<String, byte[]> batch) throws IOException {
+        if (batch.isEmpty()) {
+            return;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        List<Runnable> updates = new ArrayList<>(batch.size());
+        long position = this.active.size;
+        Segment segment = this.active;
+        try (DataOutputStream output = new DataOutputStream(bytes)) {
+            for (Map.Entry<String, byte[]> entry : batch.entrySet()) {
+                byte[] name = entry.getKey().getBytes(StandardCharsets.UTF_8);
+                byte[] data = entry.getValue();
+                LogRecords.write(output, name, data);
+                int size = LogRecords.size(name, data);
+                Location location = data == null ? null : new Location(segment, position + LogRecords.dataOffset(name), data.length, size);
+                updates.add(() -> {
+                    this.apply(entry.getKey(), location);
+                    if (location == null) {
+                        segment.garbage += size;
+                    }
+                });
+                position += size;
+            }
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+        long offset = segment.size;
+        while (buffer.hasRemaining()) {
+            offset += segment.channel.write(buffer, offset);
+        }
+        segment.channel.force(false); // the only fsync of the whole batch
+        segment.size = position;
+        updates.forEach(Runnable::run); // readers see the entries only after they are durable
+
+        if (segment.size >= this.segmentSize) {
+            this.active = this.createSegment(this.segments.lastKey() + 1);
+        }
+    }
+
+    @Override
+    public synchronized boolean exists(@NotNull String name) {
+        return this.index.containsKey(name);
+    }
+
+    @Override
+    public void forEachName(@NotNull Consumer<@NotNull String> action) {
+        List<String> names;
+        synchronized (this) {
+            names = new ArrayList<>(this.index.keySet());
+        }
+        names.forEach(action);
+    }
+
+    /**
+     * Compacts the full segments if more than half of their bytes are garbage.
+     */
+    public void compactIfNeeded() {
+        long size = 0;
+        long garbage = 0;
+        synchronized (this) {
+            for (Segment segment : this.segments.values()) {
+                if (segment != this.active) {
+                    size += segment.size;
+                    garbage += segment.garbage;
+                }
+            }
+        }
+        if (size > 0 && garbage * 2 > size) {
+            try {
+                this.compact();
+            } catch (IOException e) {
+                LOGGER.log(Level.SEVERE, "Could not compact the segmented storage of " + this.folder, e);
+            }
+        }
+    }
+
+    /**
+     * Rewrites the live entries of all full segments into a single segment.
+     * <p>
+     * The new segment takes the id of the newest full segment, so it is still replayed
+     * before the active segment. Writes are not blocked while the entries are copied.
+     * </p>
+     *
+     * @throws IOException If the segments could not be compacted.
+     */
+    public void compact() throws IOException {
+        List<Segment> sealed;
+        Map<String, Location> live = new LinkedHashMap<>();
+        synchronized (this) {
+            if (this.compacting) {
+                return;
+            }
+            sealed = new ArrayList<>(this.segments.headMap(this.active.id, false).values());
+            if (sealed.isEmpty()) {
+                return;
+            }
+            this.compacting = true;
+            Set<Segment> set = new HashSet<>(sealed);
+            this.index.forEach((name, location) -> {
+                if (set.contains(location.segment)) {
+                    live.put(name, location);
+                }
+            });
+        }
+        try {
+            Segment newest = sealed.get(sealed.size() - 1);
+            Set<String> dead = new LinkedHashSet<>();
+            for (Segment segment : sealed) {
+                if (segment == newest) {
+                    continue;
+                }
+                try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(segment.path)))) {
+                    LogRecords.Entry entry;
+                    while ((entry = LogRecords.read(input)) != null) {
+                        if (!live.containsKey(entry.name())) {
+                            dead.add(entry.name());
+                        }
+                    }
+                }
+            }
+
+            Path temp = this.folder.resolve(PREFIX + "compact" + SUFFIX + AtomicFiles.TEMP_SUFFIX);
+            Map<String, Location> moved = new HashMap<>();
+            long position = 0;
+            long garbage = 0;
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+                 DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)))) {
+                for (Map.Entry<String, Location> entry : live.entrySet()) {
+                    byte[] name = entry.getKey().getBytes(StandardCharsets.UTF_8);
+                    byte[] data = readData(entry.getValue());
+                    LogRecords.write(output, name, data);
+                    moved.put(entry.getKey(), new Location(null, position + LogRecords.dataOffset(name), data.length, LogRecords.size(name, data)));
+                    position += LogRecords.size(name, data);
+                }
+                // keeps deleted entries from coming back if the server stops before the older segments are removed
+                for (String deleted : dead) {
+                    byte[] name = deleted.getBytes(StandardCharsets.UTF_8);
+                    LogRecords.write(output, name, null);
+                    position += LogRecords.size(name, null);
+                    garbage += LogRecords.size(name, null);
+                }
+                output.flush();
+                channel.force(true);
+            }
+            try {
+                Files.move(temp, newest.path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, newest.path, StandardCopyOption.REPLACE_EXISTING);
+            }
+
+            synchronized (this) {
+                Segment compacted = new Segment(newest.id, newest.path);
+                compacted.size = position;
+                compacted.garbage = garbage;
+                for (Segment segment : sealed) {
+                    this.segments.remove(segment.id);
+                }
+                this.segments.put(compacted.id, compacted);
+                for (Map.Entry<String, Location> entry : moved.entrySet()) {
+                    Location location = entry.getValue();
+                    if (this.index.get(entry.getKey()) == live.get(entry.getKey())) {
+                        this.index.put(entry.getKey(), new Location(compacted, location.position, location.length, location.recordSize));
+                    } else {
+                        compacted.garbage += location.recordSize; // overwritten while compacting
+                    }
+                }
+            }
+            for (Segment segment : sealed) {
+                segment.channel.close(); // readers still on the old segment retry
+                if (segment != newest) {
+                    Files.deleteIfExists(segment.path);
+                }
+            }
+        } finally {
+            synchronized (this) {
+                this.compacting = false;
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.compactor.shutdown();
+        try {
+            this.compactor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            for (Segment segment : this.segments.values()) {
+                segment.channel.force(true);
+                segment.channel.close();
+            }
+        }
+    }
+
+    /**
+     * One segment file of the log.
+     */
+    private static final class Segment {
+        private final int id;
+        private final @NotNull Path path;
+        private final @NotNull FileChannel channel;
+        private long size = 0; // bytes of valid records
+        private long garbage = 0; // bytes of records that are no longer referenced
+
+        private Segment(int id, @NotNull Path path) throws IOException {
+            this.id = id;
+            this.path = path;
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+    }
+
+    /**
+     * Position of the latest record of an entry.
+     *
+     * @param segment    Segment holding the record.
+     * @param position   Position of the data in the segment.
+     * @param length     Length of the data.
+     * @param recordSize Size of the whole record.
+     */
+    private record Location(Segment segment, long position, int length, int recordSize) {
+    }
+}
@@ -0,0 +1,142 @@
+package com.marcusslover.plus.lib.container.storage;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+/**
+ * File storage that spreads the files over nested shard directories.
+ * <p>
+ * The shard of a file is derived from the hash of its name without the extension,
+ * for example {@code a3/0f/name.json} with two levels. With 256 directories per level,
+ * even millions of files keep every directory small.
+ * </p>
+ * <p>
+ * Files of the flat layout are moved into their shards when the storage is created.
+ * </p>
+ */
+public class ShardedFileStorage extends FileStorage {
+    private static final Logger LOGGER = Logger.getLogger(ShardedFileStorage.class.getName());
+    static final int MAX_LEVELS = 4;
+
+    protected final int levels;
+
+    /**
+     * Creates a new sharded file storage.
+     *
+     * @param folder The container folder.
+     * @param levels Amount of nested shard directories, from 1 to 4.
+     * @throws IOException If the files of the flat layout could not be migrated.
+     */
+    public ShardedFileStorage(@NotNull Path folder, int levels) throws IOException {
+        super(folder);
+        if (levels < 1 || levels > MAX_LEVELS) {
+            throw new IllegalArgumentException("Levels must be between 1 and 4: " + levels);
+        }
+        this.levels = levels;
+        this.migrateFlatLayout();
+    }
+
+    private void migrateFlatLayout() throws IOException {
+        int moved = 0;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(this.folder, FileStorage::isEntry)) {
+            for (Path path : stream) {
+                if (!Files.isRegularFile(path)) {
+                    continue; // a shard
+                }
+                Path target = this.resolve(path.getFileName().toString());
+                Files.createDirectories(target.getParent());
+                Files.move(path, target, StandardCopyOption.REPLACE_EXISTING);
+                moved++;
+            }
+        }
+        if (moved > 0) {
+            LOGGER.info("Moved " + moved + " files of " + this.folder + " into shards");
+        }
+    }
+
+    @Override
+    protected @NotNull Path resolve(@NotNull String name) {
+        int dot = name.lastIndexOf('.');
+        int hash = mix((dot < 0 ? name : name.substring(0, dot)).hashCode()); // same shard for every extension
+        Path path = this.folder;
+        for (int level = 0; level < this.levels; level++) {
+            path = path.resolve(String.format("%02x", (hash >>> (level * 8)) & 0xFF));
+        }
+        return path.resolve(name);
+    }
+
+    /**
+     * Checks if the directory is a shard, named by two hex digits.
+     *
+     * @param directory The directory.
+     * @return True if the directory is a shard.
+     */
+    static boolean isShard(@NotNull Path directory) {
+        String name = directory.getFileName().toString();
+        return name.length() == 2 && Character.digit(name.charAt(0), 16) >= 0 && Character.digit(name.charAt(1), 16) >= 0
+            && Files.isDirectory(directory);
+    }
+
+    private static int mix(int hash) { // String.hashCode clusters similar names
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        hash ^= hash >>> 16;
+        return hash;
+    }
+
+    /**
+     * Visits the names of all entries.
+     * <p>
+     * The top level shards are listed in parallel, the action is still called
+     * on the calling thread, one shard after another.
+     * Other folders, for example of snapshots, and files outside the deepest shards are skipped.
+     * </p>
+     *
+     * @param action Action called for each name.
+     * @throws IOException If the storage could not be listed.
+     */
+    @Override
+    public void forEachName(@NotNull Consumer<@NotNull String> action) throws IOException {
+        List<Path> shards = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(this.folder, ShardedFileStorage::isShard)) {
+            stream.forEach(shards::add);
+        }
+        try {
+            shards.parallelStream()
+                    .map(shard -> this.list(shard, this.levels - 1))
+                    .forEachOrdered(names -> names.forEach(action));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private @NotNull List<String> list(@NotNull Path directory, int depth) {
+        List<String> names = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, FileStorage::isEntry)) {
+            for (Path path : stream) {
+                if (depth > 0) {
+                    if (isShard(path)) {
+                        names.addAll(this.list(path, depth - 1));
+                    }
+                } else if (Files.isRegularFile(path)) {
+                    names.add(path.getFileName().toString());
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return names;
+    }
+}
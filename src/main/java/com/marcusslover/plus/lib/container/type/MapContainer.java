@@ -1,23 +1,44 @@
 package com.marcusslover.plus.lib.container.type;
 
-import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
 import com.marcusslover.plus.lib.container.AbstractContainer;
+import com.marcusslover.plus.lib.container.codec.CompressedCodec;
+import com.marcusslover.plus.lib.container.codec.ContainerCodec;
+import com.marcusslover.plus.lib.container.extra.EvictionPolicy;
+import com.marcusslover.plus.lib.container.extra.WriteConflictHandler;
+import com.marcusslover.plus.lib.container.index.ContainerIndex;
+import com.marcusslover.plus.lib.container.metrics.ContainerMetrics;
+import com.marcusslover.plus.lib.container.storage.ContainerStorage;
+import com.marcusslover.plus.lib.container.storage.FileStorage;
+import lombok.AccessLevel;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.logging.Level;
 
 /**
  * Container that represents a map of objects.
  * Key is the name of the file. Files are dynamic.
- * Value is the object. Each value is serialized to its own JSON file.
+ * Value is the object. Each value is serialized to its own file, see {@link #getCodec()}.
+ * Where the files end up is decided by the storage, see {@link #createStorage()}.
+ * The cache is thread-safe, objects can be loaded from async tasks.
  *
  * @param <K> Key type.
  * @param <V> Value type.
@@ -28,12 +49,68 @@ public abstract class MapContainer<K, V> extends AbstractContainer<K> {
     /*Default string-to-string solution for file naming*/
     protected static final Function<String, String> TRANSFORMER = (x -> x);
     protected static final Function<String, String> COMPOSER = (x -> x);
+    /*Amount of objects written together when saving everything*/
+    protected static final int BATCH_SIZE = 512;
+    /*Amount of files parsed by one loader task and how often the progress is reported*/
+    protected static final int LOAD_CHUNK_SIZE = 256;
+    protected static final int LOAD_PROGRESS_INTERVAL = 50_000;
+    /*How often a conflicting write is resolved before it fails, see #writeChecked*/
+    protected static final int CONFLICT_RETRIES = 3;
     /*Container data*/
-    protected final Map<K, V> cache = new HashMap<>();
+    protected final Map<K, V> cache = new ConcurrentHashMap<>();
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    protected final Map<K, CompletableFuture<V>> loading = new ConcurrentHashMap<>(); // reads in progress
     /*File naming solution*/
     protected final Function<K, String> keyTransformer;
     protected final Function<String, K> keyComposer;
     protected final Class<V> valueType;
+    /*Write-behind*/
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    protected final Map<K, Encoded> pendingWrites = new ConcurrentHashMap<>(); // serialized by update
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    protected volatile @Nullable ScheduledExecutorService writeBehindExecutor = null;
+    /*Dirty tracking*/
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    protected final Map<K, Long> contentHashes = new ConcurrentHashMap<>(); // content last read or written
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    protected final Set<K> dirty = ConcurrentHashMap.newKeySet();
+    protected boolean explicitDirtyTracking = false;
+    /*Write ordering, see #commit*/
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    protected final AtomicLong writeSequence = new AtomicLong();
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    protected final Map<K, Long> latestWrites = new ConcurrentHashMap<>(); // newest serialized content not written yet
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    protected final Map<K, CompletableFuture<Void>> writing = new HashMap<>(); // keys being written, guarded by itself
+    /*Conflicts with other servers sharing the storage, see #writeChecked*/
+    protected @Nullable WriteConflictHandler<K, V> conflictHandler = null; // null to overwrite blindly
+    /*Secondary indexes*/
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    protected final List<ContainerIndex<K, V>> indexes = new CopyOnWriteArrayList<>();
+    /*Eviction*/
+    @Setter(AccessLevel.NONE)
+    protected @Nullable EvictionPolicy<V> evictionPolicy = null;
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    protected final LinkedHashMap<K, AccessEntry> accessOrder = new LinkedHashMap<>(); // in the order of tracking, see #evict
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    protected final Map<K, AccessEntry> accessEntries = new ConcurrentHashMap<>(); // same entries, touched without the lock
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    protected final Map<K, CompletableFuture<Void>> evicting = new ConcurrentHashMap<>(); // evicted objects being written back
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    protected long totalWeight = 0;
 
     /**
      * Creates a new instance of an object.
@@ -51,6 +128,7 @@ public abstract class MapContainer<K, V> extends AbstractContainer<K> {
      * Called when a new object gets loaded.
      * <p>
      * This function is mainly called when {@link #storeLocally(K, V)} is called.
+     * During {@link #loadAllData()}, it is called from the loader threads.
      * </p>
      *
      * @param value The object that was most recently loaded.
@@ -71,26 +149,275 @@ public abstract class MapContainer<K, V> extends AbstractContainer<K> {
         // do some extra thing when the value is unloaded
     }
 
+    /**
+     * Push the updated object to the cache and save it to the file.
+     * <p>
+     * If write-behind is enabled, the object is serialized right away and its content
+     * is written by the I/O thread during the next flush.
+     * The file is not touched if the content of the object did not change.
+     * </p>
+     *
+     * @param key Key of the object.
+     */
     @Override
     public void update(@NotNull K key) {
-        this.writeData(key, this.retrieveLocally(key));
+        V value = this.retrieveLocally(key);
+        if (value != null) {
+            this.dirty.add(key);
+            for (ContainerIndex<K, V> index : this.indexes) {
+                index.put(key, value); // indexed fields may have changed
+            }
+            if (this.evictionPolicy != null) {
+                this.track(key, value, true); // the weight may have changed
+            }
+        }
+        if (this.writeBehindExecutor != null && value != null) {
+            this.dirty.remove(key); // changes made from now on are marked again
+            this.pendingWrites.put(key, this.encode(key, value)); // coalesces repeated updates
+            return;
+        }
+        this.writeData(key, value);
+    }
+
+    /**
+     * Marks the object as modified without writing it.
+     * <p>
+     * The object is written by the next {@link #saveData(Object)} or {@link #saveData()}.
+     * Only needed with {@link #setExplicitDirtyTracking(boolean)}, otherwise
+     * modified objects are found by comparing their serialized content.
+     * </p>
+     *
+     * @param key Key of the object.
+     */
+    public void markDirty(@NotNull K key) {
+        if (this.cache.containsKey(key)) {
+            this.dirty.add(key);
+        }
+    }
+
+    /**
+     * Checks if the object was marked as modified since it was last written.
+     *
+     * @param key Key of the object.
+     * @return True if the object is marked as modified.
+     */
+    public boolean isDirty(@NotNull K key) {
+        return this.dirty.contains(key);
+    }
+
+    /**
+     * Enables write-behind persistence.
+     * <p>
+     * From now on, {@link #update(Object)} does not touch the disk. Instead, a dedicated
+     * I/O thread writes all pending objects in one batch every interval.
+     * Objects are still serialized by {@link #update(Object)} on the calling thread,
+     * so the I/O thread never sees an object while it is being modified.
+     * </p>
+     *
+     * @param interval The interval between two flushes.
+     * @param unit     The unit of the interval.
+     */
+    public synchronized void enableWriteBehind(long interval, @NotNull TimeUnit unit) {
+        if (this.writeBehindExecutor != null) {
+            return; // already enabled
+        }
+        String name = "Plus-WriteBehind-" + this.getClass().getSimpleName();
+        this.writeBehindExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.writeBehindExecutor.scheduleWithFixedDelay(this::flushPendingWrites, interval, interval, unit);
+    }
+
+    /**
+     * Disables write-behind persistence.
+     * <p>
+     * Waits for the I/O thread to finish its current batch,
+     * then writes all remaining pending objects on the calling thread.
+     * </p>
+     */
+    public synchronized void disableWriteBehind() {
+        ScheduledExecutorService executor = this.writeBehindExecutor;
+        if (executor == null) {
+            return;
+        }
+        this.writeBehindExecutor = null;
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+                this.plugin.getLogger().warning("Write-behind thread did not finish in time: " + this.getClass().getSimpleName());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        this.flushPendingWrites(); // drain whatever is left
+    }
+
+    /**
+     * Checks if write-behind persistence is enabled.
+     *
+     * @return True if enabled, false otherwise.
+     */
+    public boolean isWriteBehind() {
+        return this.writeBehindExecutor != null;
+    }
+
+    /**
+     * Gets the amount of objects whose write-behind write is pending.
+     *
+     * @return The amount of pending writes.
+     */
+    public int getPendingWriteCount() {
+        return this.pendingWrites.size();
+    }
+
+    /**
+     * Writes all pending objects to their files.
+     * <p>
+     * Called periodically by the I/O thread when write-behind is enabled.
+     * Objects that fail to write are kept pending for the next flush.
+     * </p>
+     */
+    public void flushPendingWrites() {
+        Map<K, Encoded> taken = new HashMap<>();
+        for (K key : new ArrayList<>(this.pendingWrites.keySet())) {
+            Encoded encoded = this.pendingWrites.remove(key);
+            if (encoded != null) { // null means already written by someone else
+                taken.put(key, encoded);
+            }
+        }
+        if (taken.isEmpty()) {
+            return;
+        }
+        Batch batch = new Batch();
+        taken.forEach(batch::addEncoded);
+        try {
+            this.commit(batch);
+        } catch (Exception e) {
+            taken.forEach((key, encoded) -> { // retry next time, unless a newer value was serialized since
+                Long latest = this.latestWrites.get(key); // kept by the failed commit
+                if (latest != null && latest == encoded.sequence()) {
+                    this.pendingWrites.putIfAbsent(key, encoded);
+                }
+            });
+            if (this.plugin != null) {
+                this.plugin.getLogger().log(Level.SEVERE, "Could not write pending data of " + taken.size() + " objects", e);
+            }
+        }
+    }
+
+    /**
+     * Opens the write-ahead journal of this container.
+     * <p>
+     * A journal left behind by a crash is replayed first.
+     * From now on, every batch of writes costs a single fsync of the journal.
+     * Only the default {@link FileStorage} uses a journal, other storages sync their batches on their own.
+     * </p>
+     *
+     * @param checkpointSize Size of the journal in bytes after which a checkpoint happens.
+     */
+    public void openJournal(long checkpointSize) {
+        if (!(this.getStorage() instanceof FileStorage fileStorage)) {
+            return;
+        }
+        try {
+            int restored = fileStorage.openJournal(checkpointSize);
+            if (restored > 0) {
+                this.plugin.getLogger().warning("Restored " + restored + " files from the journal of " + this.getClass().getSimpleName());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Checkpoints and closes the write-ahead journal of this container.
+     */
+    public void closeJournal() {
+        if (!(this.storage instanceof FileStorage fileStorage)) {
+            return;
+        }
+        try {
+            fileStorage.closeJournal();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 
     /**
      * Loads an object from the file.
      * The key is the name of the file.
+     * <p>
+     * Safe to call from any thread. Concurrent calls for the same key
+     * share a single read of the file.
+     * </p>
      *
      * @param key Key to the object.
      * @return The object.
      */
     public @NotNull V loadData(@NotNull K key) {
-        if (this.cache.containsKey(key)) {
-            //noinspection DataFlowIssue
-            return this.retrieveLocally(key);
+        V cached = this.retrieveLocally(key);
+        ContainerMetrics metrics = this.metrics;
+        if (cached != null) {
+            if (metrics != null) {
+                metrics.recordHit();
+            }
+            return cached;
+        }
+        if (metrics != null) {
+            metrics.recordMiss();
+        }
+        CompletableFuture<V> future = new CompletableFuture<>();
+        CompletableFuture<V> existing = this.loading.putIfAbsent(key, future);
+        if (existing != null) { // someone else is already reading the file
+            try {
+                return existing.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException runtimeException) {
+                    throw runtimeException;
+                }
+                throw e;
+            }
+        }
+        try {
+            CompletableFuture<Void> evicted = this.evicting.get(key);
+            if (evicted != null) {
+                evicted.join(); // the file is written back right now
+            }
+            V data = this.retrieveLocally(key); // might have been stored in the meantime
+            if (data == null) {
+                data = this.readData(key);
+                this.storeLocally(key, data);
+            }
+            future.complete(data);
+            return data;
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            this.loading.remove(key, future);
         }
-        V data = this.readData(key);
-        this.storeLocally(key, data);
-        return data;
+    }
+
+    /**
+     * Same as {@link #loadData(Object)}, but runs on the executor of this container.
+     *
+     * @param key Key to the object.
+     * @return Future of the object.
+     */
+    public @NotNull CompletableFuture<V> loadDataAsync(@NotNull K key) {
+        return CompletableFuture.supplyAsync(() -> this.loadData(key), this.getExecutor());
+    }
+
+    /**
+     * Same as {@link #saveData(Object)}, but runs on the executor of this container.
+     *
+     * @param key Key to the object.
+     * @return Future completed once the object is saved and unloaded.
+     */
+    public @NotNull CompletableFuture<Void> saveDataAsync(@NotNull K key) {
+        return CompletableFuture.runAsync(() -> this.saveData(key), this.getExecutor());
     }
 
     /**
@@ -100,26 +427,192 @@ public abstract class MapContainer<K, V> extends AbstractContainer<K> {
      */
     @Override
     public void loadAllData() {
-        File[] files = this.parentFolder.listFiles();
-        if (files == null) {
+        this.loadAllData(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Loads all the objects from the files using the given amount of threads.
+     * <p>
+     * The folder is streamed in chunks, and each chunk is parsed by one of the loader threads.
+     * Progress and the total time are reported to the plugin logger.
+     * </p>
+     *
+     * @param parallelism Amount of loader threads, 1 to load on the calling thread.
+     */
+    public void loadAllData(int parallelism) {
+        long start = System.nanoTime();
+        String name = this.getClass().getSimpleName();
+        AtomicInteger loaded = new AtomicInteger();
+        this.forEachChunk(parallelism, "Plus-Loader-" + name, chunk -> this.loadChunk(chunk, loaded));
+
+        long nanos = System.nanoTime() - start;
+        ContainerMetrics metrics = this.metrics;
+        if (metrics != null) {
+            metrics.recordLoadAll(nanos, loaded.get());
+        }
+        this.plugin.getLogger().info("Loaded " + loaded.get() + " objects of " + name + " in " + TimeUnit.NANOSECONDS.toMillis(nanos) + "ms");
+    }
+
+    /**
+     * Migrates all stored objects to the current schema version using the given amount of threads.
+     * <p>
+     * Files are streamed in chunks like in {@link #loadAllData(int)}, but nothing is loaded into the cache.
+     * Only the version field of each file is read, outdated files are migrated and rewritten,
+     * each chunk as a single batch. Loaded objects are skipped, they were migrated when they were read.
+     * Meant to be run before the objects are used, for example right after a deploy.
+     * </p>
+     *
+     * @param parallelism Amount of threads, 1 to migrate on the calling thread.
+     * @return Amount of migrated files.
+     * @see #registerMigration(int, com.marcusslover.plus.lib.container.extra.Migration)
+     */
+    public int migrateAll(int parallelism) {
+        if (this.getSchemaVersion() == 0) {
+            return 0;
+        }
+        long start = System.nanoTime();
+        String name = this.getClass().getSimpleName();
+        AtomicInteger migrated = new AtomicInteger();
+        this.forEachChunk(parallelism, "Plus-Migrator-" + name, chunk -> this.migrateChunk(chunk, migrated));
+        if (this.plugin != null) {
+            this.plugin.getLogger().info("Migrated " + migrated.get() + " objects of " + name + " to version " + this.getSchemaVersion()
+                + " in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + "ms");
+        }
+        return migrated.get();
+    }
+
+    private void forEachChunk(int parallelism, @NotNull String threadName, @NotNull Consumer<List<String>> action) {
+        ExecutorService executor = parallelism > 1 ? Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, threadName);
+            thread.setDaemon(true);
+            return thread;
+        }) : null;
+
+        List<Future<?>> futures = new ArrayList<>();
+        List<List<String>> chunk = new ArrayList<>(List.of(new ArrayList<>(LOAD_CHUNK_SIZE)));
+        try {
+            this.getStorage().forEachName(fileName -> {
+                if (this.stripExtension(fileName) == null) {
+                    return; // not written by any codec
+                }
+                List<String> current = chunk.get(0);
+                current.add(fileName);
+                if (current.size() < LOAD_CHUNK_SIZE) {
+                    return;
+                }
+                futures.add(submitChunk(executor, current, action));
+                chunk.set(0, new ArrayList<>(LOAD_CHUNK_SIZE));
+            });
+            if (!chunk.get(0).isEmpty()) {
+                futures.add(submitChunk(executor, chunk.get(0), action));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    private static @NotNull Future<?> submitChunk(@Nullable ExecutorService executor, @NotNull List<String> chunk, @NotNull Consumer<List<String>> action) {
+        if (executor == null) { // run on the calling thread
+            action.accept(chunk);
+            return CompletableFuture.completedFuture(null);
+        }
+        return executor.submit(() -> action.accept(chunk));
+    }
+
+    private void loadChunk(@NotNull List<String> chunk, @NotNull AtomicInteger loaded) {
+        String extension = this.getCodec().extension();
+        ContainerStorage storage = this.getStorage();
+        long start = System.nanoTime();
+        Map<String, byte[]> fetched;
+        try { // a single round trip for the whole chunk
+            fetched = storage.readAll(chunk.stream().filter(fileName -> fileName.endsWith(extension)).toList());
+        } catch (IOException e) {
+            this.plugin.getLogger().log(Level.SEVERE, "Could not load files of " + this.getClass().getSimpleName(), e);
             return;
         }
-        for (File file : files) {
+        long fetchNanos = (System.nanoTime() - start) / Math.max(1, fetched.size()); // shared by the objects of the chunk
+        for (String fileName : chunk) {
             try {
-                String fileName = file.getName();
-                K apply = this.keyComposer.apply(fileName.replaceFirst("(\\.json)", ""));
-                V read = this.read(fileName);
+                boolean foreign = !fileName.endsWith(extension); // written by another codec
+                String name = Objects.requireNonNull(this.stripExtension(fileName));
+                K apply = this.keyComposer.apply(name);
+                if (foreign && storage.exists(name + extension)) {
+                    storage.write(Collections.singletonMap(fileName, null)); // already migrated, the new file wins
+                    continue;
+                }
                 if (this.containsKeyLocally(apply)) {
                     continue;
                 }
+                byte[] data = fetched.get(fileName);
+                V read = foreign ? this.migrateFile(apply, fileName) : data == null ? null : this.decode(apply, data, System.nanoTime() - fetchNanos);
+                if (read == null) {
+                    continue; // deleted in the meantime
+                }
                 this.storeLocally(apply, read);
+
+                int count = loaded.incrementAndGet();
+                if (count % LOAD_PROGRESS_INTERVAL == 0) {
+                    this.plugin.getLogger().info("Loading " + this.getClass().getSimpleName() + "... " + count + " objects so far");
+                }
             } catch (Exception e) {
-                //noinspection CallToPrintStackTrace
-                e.printStackTrace();
+                this.plugin.getLogger().log(Level.SEVERE, "Could not load file: " + fileName, e);
             }
         }
     }
 
+    private void migrateChunk(@NotNull List<String> chunk, @NotNull AtomicInteger migrated) {
+        String extension = this.getCodec().extension();
+        ContainerStorage storage = this.getStorage();
+        Map<String, byte[]> batch = new HashMap<>();
+        for (String fileName : chunk) {
+            try {
+                boolean foreign = !fileName.endsWith(extension); // written by another codec
+                String name = Objects.requireNonNull(this.stripExtension(fileName));
+                K key = this.keyComposer.apply(name);
+                if (this.containsKeyLocally(key) || (foreign && storage.exists(name + extension))) {
+                    continue;
+                }
+                byte[] data = storage.read(fileName);
+                if (data == null) {
+                    continue;
+                }
+                ContainerCodec codec = ContainerCodec.detect(data);
+                JsonElement version = codec.readFields(data, Set.of(VERSION_FIELD)).get(VERSION_FIELD);
+                if (!foreign && version != null && version.getAsInt() == this.getSchemaVersion()) {
+                    continue; // up to date
+                }
+                JsonElement tree = codec.decode(this.getGson(), data, JsonElement.class);
+                if (tree == null || !tree.isJsonObject()) {
+                    continue;
+                }
+                this.upgrade(tree.getAsJsonObject());
+                batch.put(name + extension, this.serialize(tree));
+                if (foreign) {
+                    batch.put(fileName, null);
+                }
+                migrated.incrementAndGet();
+            } catch (Exception e) {
+                this.plugin.getLogger().log(Level.SEVERE, "Could not migrate file: " + fileName, e);
+            }
+        }
+        try {
+            storage.write(batch);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
     /**
      * Unloads an object from the cache and saves it to the file.
      *
@@ -130,20 +623,49 @@ public abstract class MapContainer<K, V> extends AbstractContainer<K> {
             return;
         }
         V data = this.retrieveLocally(key);
-        this.writeData(key, data);
+        boolean pending = this.pendingWrites.remove(key) != null; // written right now
+        if (pending || this.needsWrite(key)) {
+            this.writeData(key, data);
+        } else {
+            this.flushStats.recordSkipped(1);
+        }
         this.cleanLocally(key);
     }
 
     /**
      * Saves all the objects from the cache to the file.
+     * Objects whose content did not change are skipped, see {@link #getFlushStats()}.
      * Should be called when the plugin is disabled.
      */
     public void saveData() {
-        for (K key : new ArrayList<>(this.cache.keySet())) { // use keys to prevent concurrent modification
-            this.saveData(key); // save data individually
+        List<K> keys = new ArrayList<>(this.cache.keySet()); // use keys to prevent concurrent modification
+        for (int i = 0; i < keys.size(); i += BATCH_SIZE) {
+            Map<K, V> batch = new HashMap<>();
+            List<K> unchanged = new ArrayList<>();
+            for (K key : keys.subList(i, Math.min(i + BATCH_SIZE, keys.size()))) {
+                V value = this.retrieveLocally(key);
+                if (value == null) {
+                    continue;
+                }
+                boolean pending = this.pendingWrites.remove(key) != null; // written right now
+                if (pending || this.needsWrite(key)) {
+                    batch.put(key, value);
+                } else {
+                    unchanged.add(key);
+                }
+            }
+            this.writeData(batch); // save data in batches
+            this.flushStats.recordSkipped(unchanged.size());
+            batch.keySet().forEach(this::cleanLocally);
+            unchanged.forEach(this::cleanLocally);
         }
     }
 
+    private boolean needsWrite(@NotNull K key) {
+        // with explicit tracking, only marked objects and objects that were never written are serialized
+        return !this.explicitDirtyTracking || this.dirty.contains(key) || !this.contentHashes.containsKey(key);
+    }
+
     /**
      * Checks if an object with the given key is loaded in the cache.
      *
@@ -170,17 +692,36 @@ public abstract class MapContainer<K, V> extends AbstractContainer<K> {
     /**
      * Cleans the object from the cache.
      * <p>
-     * This function does not write the object to the file.
+     * This function does not write the object to the file,
+     * a pending write-behind of the object is dropped as well.
      * </p>
      *
      * @param key Key to the object.
      */
     public void cleanLocally(@NotNull K key) {
-        V value = this.retrieveLocally(key);
+        V value = this.cache.get(key);
         if (value != null) {
             this.onValueUnloaded(value);
         }
         this.cache.remove(key);
+        for (ContainerIndex<K, V> index : this.indexes) {
+            index.remove(key);
+        }
+        this.contentHashes.remove(key);
+        this.dirty.remove(key);
+        Encoded pending = this.pendingWrites.remove(key); // not written, like any other change
+        if (pending != null) {
+            this.latestWrites.remove(key, pending.sequence());
+        }
+        if (this.evictionPolicy != null) {
+            synchronized (this.accessOrder) {
+                this.accessEntries.remove(key);
+                AccessEntry entry = this.accessOrder.remove(key);
+                if (entry != null) {
+                    this.totalWeight -= entry.weight;
+                }
+            }
+        }
     }
 
     /**
@@ -200,6 +741,13 @@ public abstract class MapContainer<K, V> extends AbstractContainer<K> {
         } else {
             this.onValueLoaded(value);
             this.cache.put(key, value);
+            for (ContainerIndex<K, V> index : this.indexes) {
+                index.put(key, value);
+            }
+            if (this.evictionPolicy != null) {
+                this.track(key, value, true);
+                this.evict();
+            }
         }
     }
 
@@ -214,7 +762,227 @@ public abstract class MapContainer<K, V> extends AbstractContainer<K> {
      * @return The object or null if it is not loaded.
      */
     public @Nullable V retrieveLocally(@NotNull K key) {
-        return this.cache.getOrDefault(key, null);
+        V value = this.cache.getOrDefault(key, null);
+        if (value != null && this.evictionPolicy != null) {
+            AccessEntry entry = this.accessEntries.get(key);
+            if (entry != null) { // no lock, the entry is moved during the next eviction
+                entry.lastAccess = System.currentTimeMillis();
+                entry.accessed = true;
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Registers a secondary index over the loaded objects.
+     * <p>
+     * Objects that are already loaded are indexed right away. From now on, the index is kept up to date
+     * by {@link #storeLocally(Object, Object)}, {@link #update(Object)} and {@link #cleanLocally(Object)}.
+     * Changes made through {@link #getCache()} directly are not indexed.
+     * </p>
+     *
+     * @param index The index, for example {@link com.marcusslover.plus.lib.container.index.HashIndex}
+     *              or {@link com.marcusslover.plus.lib.container.index.SortedIndex}.
+     * @param <I>   Index type.
+     * @return The same index, for chaining.
+     */
+    public <I extends ContainerIndex<K, V>> @NotNull I addIndex(@NotNull I index) {
+        this.indexes.add(index);
+        this.cache.forEach(index::put);
+        return index;
+    }
+
+    /**
+     * Unregisters a secondary index.
+     *
+     * @param index The index.
+     */
+    public void removeIndex(@NotNull ContainerIndex<K, V> index) {
+        this.indexes.remove(index);
+        index.clear();
+    }
+
+    /**
+     * Retrieves the loaded objects of the keys, usually the result of an index query.
+     * Keys that are not loaded are skipped.
+     *
+     * @param keys Keys to the objects.
+     * @return The objects, in the order of the keys.
+     */
+    public @NotNull List<V> retrieveAllLocally(@NotNull Collection<K> keys) {
+        List<V> values = new ArrayList<>(keys.size());
+        for (K key : keys) {
+            V value = this.cache.get(key);
+            if (value != null) {
+                values.add(value);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Sets the eviction policy of the cache.
+     * <p>
+     * Objects that are already loaded are tracked from now on, as if they were just accessed.
+     * Pass null to disable eviction.
+     * </p>
+     *
+     * @param evictionPolicy The eviction policy.
+     */
+    public void setEvictionPolicy(@Nullable EvictionPolicy<V> evictionPolicy) {
+        synchronized (this.accessOrder) {
+            this.accessOrder.clear();
+            this.accessEntries.clear();
+            this.totalWeight = 0;
+            this.evictionPolicy = evictionPolicy;
+        }
+        if (evictionPolicy != null) {
+            this.cache.forEach((key, value) -> this.track(key, value, true));
+            this.evict();
+        }
+    }
+
+    /**
+     * Evicts the least recently used objects that exceed the limits of the eviction policy.
+     * <p>
+     * Evicted objects are unloaded right away and written back to their files on the executor
+     * of this container, so loading a new object never waits for the disk.
+     * Loading an evicted object again waits until it is written back.
+     * If the write fails, the object is put back in the cache and written by the next save.
+     * </p>
+     * <p>
+     * Accessing an object does not take any lock, it is only marked. Marked objects are
+     * moved behind the others when the eviction reaches them, which approximates the order of access.
+     * </p>
+     * <p>
+     * This function runs automatically whenever a new object is stored, call it periodically
+     * if you rely on {@link EvictionPolicy#expireAfterAccess()}.
+     * </p>
+     */
+    public void evict() {
+        EvictionPolicy<V> policy = this.evictionPolicy;
+        if (policy == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        List<K> victims = new ArrayList<>();
+        synchronized (this.accessOrder) {
+            boolean done = false;
+            for (int pass = 0; pass < 2 && !done; pass++) { // objects are moved at most once
+                List<Map.Entry<K, AccessEntry>> accessed = new ArrayList<>();
+                Iterator<Map.Entry<K, AccessEntry>> iterator = this.accessOrder.entrySet().iterator();
+                while (iterator.hasNext()) {
+                    Map.Entry<K, AccessEntry> entry = iterator.next();
+                    AccessEntry access = entry.getValue();
+                    boolean expired = policy.expireAfterAccess() > 0 && now - access.lastAccess >= policy.expireAfterAccess();
+                    if (access.accessed && !expired) {
+                        access.accessed = false;
+                        iterator.remove();
+                        accessed.add(entry);
+                        continue;
+                    }
+                    boolean tooMany = policy.maxEntries() > 0 && this.accessOrder.size() + accessed.size() > policy.maxEntries();
+                    boolean tooHeavy = policy.maxWeight() > 0 && this.totalWeight > policy.maxWeight();
+                    if (!expired && !tooMany && !tooHeavy) {
+                        done = true; // everything after this entry was tracked or accessed later
+                        break;
+                    }
+                    iterator.remove();
+                    this.accessEntries.remove(entry.getKey());
+                    this.totalWeight -= access.weight;
+                    victims.add(entry.getKey());
+                }
+                accessed.forEach(entry -> this.accessOrder.put(entry.getKey(), entry.getValue())); // to the end
+            }
+        }
+        if (!victims.isEmpty()) {
+            this.writeBack(victims);
+        }
+    }
+
+    private void writeBack(@NotNull List<K> victims) {
+        Batch batch = new Batch();
+        Map<K, V> values = new HashMap<>();
+        for (K victim : victims) {
+            V value = this.cache.get(victim);
+            if (value == null) {
+                continue; // unloaded in the meantime
+            }
+            if (this.pendingWrites.remove(victim) != null || this.needsWrite(victim)) {
+                batch.add(victim, value); // serialized right now, the object is unloaded below
+                values.put(victim, value);
+            } else {
+                batch.skipped++;
+            }
+        }
+        CompletableFuture<Void> written = new CompletableFuture<>();
+        batch.entries.keySet().forEach(key -> this.evicting.put(key, written));
+        victims.forEach(this::cleanLocally);
+        if (batch.entries.isEmpty()) {
+            this.flushStats.recordSkipped(batch.skipped);
+            return;
+        }
+        Runnable task = () -> {
+            try {
+                this.commit(batch);
+            } catch (Exception e) {
+                values.forEach(this::restore);
+                if (this.plugin != null) {
+                    this.plugin.getLogger().log(Level.SEVERE, "Could not write back " + values.size() + " evicted objects of " + this.getClass().getSimpleName(), e);
+                }
+            } finally {
+                batch.entries.keySet().forEach(key -> this.evicting.remove(key, written));
+                written.complete(null);
+            }
+        };
+        try {
+            this.getExecutor().execute(task);
+        } catch (RejectedExecutionException e) {
+            task.run(); // the executor is shut down, write on the calling thread
+        }
+    }
+
+    private void restore(@NotNull K key, @NotNull V value) {
+        if (this.cache.putIfAbsent(key, value) != null) {
+            return; // loaded again in the meantime
+        }
+        this.onValueLoaded(value);
+        for (ContainerIndex<K, V> index : this.indexes) {
+            index.put(key, value);
+        }
+        this.track(key, value, true); // not evicted again until the next object is stored
+        this.dirty.add(key);
+    }
+
+    private void track(@NotNull K key, @NotNull V value, boolean weigh) {
+        EvictionPolicy<V> policy = this.evictionPolicy;
+        if (policy == null) {
+            return;
+        }
+        synchronized (this.accessOrder) {
+            AccessEntry entry = this.accessOrder.get(key);
+            if (entry == null) {
+                entry = new AccessEntry();
+                this.accessOrder.put(key, entry);
+                this.accessEntries.put(key, entry);
+                weigh = true;
+            }
+            entry.lastAccess = System.currentTimeMillis();
+            if (weigh) {
+                long weight = policy.weigh(value);
+                this.totalWeight += weight - entry.weight;
+                entry.weight = weight;
+            }
+        }
+    }
+
+    /**
+     * Access information of a cached object, used for eviction.
+     */
+    protected static final class AccessEntry {
+        private volatile long lastAccess;
+        private volatile boolean accessed; // since the entry was tracked or moved
+        private long weight;
     }
 
     /**
@@ -229,10 +997,220 @@ public abstract class MapContainer<K, V> extends AbstractContainer<K> {
      */
     public @NotNull V readData(@NotNull K key) {
         String fileName = this.keyTransformer.apply(key);
-        V read = this.read(fileName + ".json");
+        V read = this.read(key, fileName + this.getCodec().extension());
+        if (read == null) {
+            read = this.migrate(key, fileName);
+        }
         return Objects.requireNonNullElseGet(read, () -> this.emptyValue(key));
     }
 
+    /**
+     * Migrates the file of the object written by another codec to the current codec.
+     * This includes legacy JSON files, see {@link #LEGACY_EXTENSION}.
+     *
+     * @param key      Key to the object.
+     * @param fileName Name of the file without the extension.
+     * @return The object or null if there is no file of another codec.
+     */
+    protected @Nullable V migrate(@NotNull K key, @NotNull String fileName) {
+        for (String extension : this.foreignExtensions()) {
+            V value = this.migrateFile(key, fileName + extension);
+            if (value != null) {
+                return value;
+            }
+        }
+        return null;
+    }
+
+    private @Nullable V migrateFile(@NotNull K key, @NotNull String storedName) {
+        V stored = this.read(storedName); // the codec is detected from the content
+        if (stored == null) {
+            return null;
+        }
+        byte[] data = this.serialize(stored);
+        Map<String, byte[]> batch = new HashMap<>();
+        batch.put(this.fileName(key), data); // rewrite with the current codec
+        batch.put(storedName, null);
+        try {
+            this.getStorage().write(batch);
+            this.contentHashes.put(key, contentHash(data));
+        } catch (IOException e) {
+            this.plugin.getLogger().log(Level.WARNING, "Could not migrate file: " + storedName, e);
+        }
+        return stored;
+    }
+
+    /**
+     * Reads only some top-level fields of the object, without deserializing the whole object.
+     * <p>
+     * If the object is loaded, the fields are taken from the cache since it may be newer than the file.
+     * Otherwise, the file is streamed and all other fields are skipped. Nothing is put in the cache.
+     * </p>
+     *
+     * @param key    Key to the object.
+     * @param fields Names of the fields, as serialized by Gson.
+     * @return Object with the fields that were found, empty if there is no file.
+     */
+    public @NotNull JsonObject readFields(@NotNull K key, @NotNull String... fields) {
+        Set<String> names = Set.of(fields);
+        V cached = this.cache.get(key);
+        if (cached != null) {
+            return this.project(cached, names);
+        }
+        String fileName = this.keyTransformer.apply(key);
+        byte[] data = this.readBytes(fileName + this.getCodec().extension());
+        Iterator<String> foreign = this.foreignExtensions().iterator();
+        while (data == null && foreign.hasNext()) { // not migrated yet
+            data = this.readBytes(fileName + foreign.next());
+        }
+        return data == null ? new JsonObject() : this.projectStored(data, names);
+    }
+
+    /**
+     * Reads a single top-level field of the object, see {@link #readFields(Object, String...)}.
+     *
+     * @param key   Key to the object.
+     * @param field Name of the field, as serialized by Gson.
+     * @param type  Type of the field.
+     * @param <F>   Type of the field.
+     * @return The field or null if it was not found.
+     */
+    public <F> @Nullable F readField(@NotNull K key, @NotNull String field, @NotNull Class<F> type) {
+        JsonElement element = this.readFields(key, field).get(field);
+        return element == null ? null : this.getGson().fromJson(element, type);
+    }
+
+    /**
+     * Reads some top-level fields of every stored object, without deserializing or loading them.
+     * <p>
+     * Meant for offline scans over large amounts of objects, for example to build a leaderboard.
+     * Loaded objects are read from the cache. Runs on the calling thread.
+     * </p>
+     *
+     * @param fields Names of the fields, as serialized by Gson.
+     * @param action Action called with the key and the fields of each object.
+     */
+    public void scan(@NotNull Set<String> fields, @NotNull BiConsumer<K, JsonObject> action) {
+        String extension = this.getCodec().extension();
+        ContainerStorage storage = this.getStorage();
+        try {
+            storage.forEachName(fileName -> {
+                String name = this.stripExtension(fileName);
+                if (name == null) {
+                    return; // not written by any codec
+                }
+                try {
+                    if (!fileName.endsWith(extension) && storage.exists(name + extension)) {
+                        return; // already migrated, visited with the new extension
+                    }
+                    K key = this.keyComposer.apply(name);
+                    V cached = this.cache.get(key);
+                    if (cached != null) {
+                        action.accept(key, this.project(cached, fields));
+                        return;
+                    }
+                    byte[] data = storage.read(fileName);
+                    if (data != null) {
+                        action.accept(key, this.projectStored(data, fields));
+                    }
+                } catch (Exception e) {
+                    this.plugin.getLogger().log(Level.SEVERE, "Could not scan file: " + fileName, e);
+                }
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Reads some stored objects and encodes them again with the given codec.
+     * <p>
+     * Used to train compression dictionaries on content that looks exactly like what will be written.
+     * </p>
+     *
+     * @param max   Maximum amount of objects.
+     * @param codec The codec.
+     * @return Encoded objects, at most the given amount.
+     */
+    public @NotNull List<byte[]> sampleContents(int max, @NotNull ContainerCodec codec) {
+        List<String> names = new ArrayList<>(max);
+        try {
+            this.getStorage().forEachName(fileName -> {
+                if (names.size() < max && this.stripExtension(fileName) != null) {
+                    names.add(fileName);
+                }
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        List<byte[]> samples = new ArrayList<>(names.size());
+        for (String fileName : names) {
+            V value = this.read(fileName);
+            if (value != null) {
+                samples.add(codec.encode(this.getGson(), value));
+            }
+        }
+        return samples;
+    }
+
+    private @NotNull JsonObject project(@NotNull V value, @NotNull Set<String> fields) {
+        return select(this.getGson().toJsonTree(value), fields);
+    }
+
+    private @NotNull JsonObject projectStored(byte @NotNull [] data, @NotNull Set<String> fields) {
+        ContainerCodec codec = ContainerCodec.detect(data);
+        int current = this.getSchemaVersion();
+        if (current == 0) {
+            return codec.readFields(data, fields);
+        }
+        Set<String> names = new HashSet<>(fields);
+        names.add(VERSION_FIELD);
+        JsonObject result = codec.readFields(data, names);
+        JsonElement version = result.get(VERSION_FIELD);
+        if (version != null && version.getAsInt() == current) {
+            if (!fields.contains(VERSION_FIELD)) {
+                result.remove(VERSION_FIELD);
+            }
+            return result;
+        }
+        JsonElement tree = codec.decode(this.getGson(), data, JsonElement.class); // outdated, fields may have moved
+        if (tree != null && tree.isJsonObject()) {
+            this.upgrade(tree.getAsJsonObject());
+        }
+        return select(tree, fields);
+    }
+
+    private static @NotNull JsonObject select(@Nullable JsonElement tree, @NotNull Set<String> fields) {
+        JsonObject result = new JsonObject();
+        if (tree != null && tree.isJsonObject()) {
+            for (String field : fields) {
+                JsonElement element = tree.getAsJsonObject().get(field);
+                if (element != null) {
+                    result.add(field, element);
+                }
+            }
+        }
+        return result;
+    }
+
+    private byte @Nullable [] readBytes(@NotNull String fileName) {
+        try {
+            return this.getStorage().read(fileName);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Gets the name of the file of the object.
+     *
+     * @param key Key to the object.
+     * @return Name of the file, including the extension of the codec.
+     */
+    public @NotNull String fileName(@NotNull K key) {
+        return this.keyTransformer.apply(key) + this.getCodec().extension();
+    }
+
     /**
      * Reads the object from the file.
      * <p>
@@ -243,24 +1221,39 @@ public abstract class MapContainer<K, V> extends AbstractContainer<K> {
      * @return The object.
      */
     public @Nullable V read(@NotNull String fileName) {
-        V data;
-        Gson gson = this.getGson();
-        File file = new File(this.getParentFolder(), fileName);
-        if (file.exists()) {
-            try (FileReader fileReader = new FileReader(file)) {
-                data = gson.fromJson(fileReader, this.valueType);
-            } catch (IOException e) {
-                plugin.getLogger().severe("Could not read file: " + file.getAbsolutePath());
-                throw new RuntimeException(e);
-            }
-            return data;
+        return this.read(null, fileName);
+    }
+
+    private @Nullable V read(@Nullable K key, @NotNull String fileName) {
+        long start = System.nanoTime();
+        byte[] data;
+        try {
+            data = this.getStorage().read(fileName);
+        } catch (IOException e) {
+            plugin.getLogger().severe("Could not read file: " + fileName + " of " + this.getClass().getSimpleName());
+            throw new RuntimeException(e);
         }
-        return null;
+        return data == null ? null : this.decode(key, data, start);
+    }
+
+    private @NotNull V decode(@Nullable K key, byte @NotNull [] data, long start) {
+        if (key != null) {
+            this.contentHashes.put(key, contentHash(data)); // unchanged objects are not written back
+        }
+        V value = this.deserialize(data, this.valueType);
+        ContainerMetrics metrics = this.metrics;
+        if (metrics != null) {
+            metrics.recordRead(System.nanoTime() - start, data.length);
+        }
+        return value;
     }
 
     /**
      * Writes the object to the file.
      * <p>
+     * The file is replaced atomically, so a crash never leaves a truncated file behind.
+     * </p>
+     * <p>
      * This function does not unload anything from the cache.
      * The cache is not affected by this function.
      * If you want to delete the file, set the value to null!
@@ -270,24 +1263,374 @@ public abstract class MapContainer<K, V> extends AbstractContainer<K> {
      * @param value Object to write.
      */
     public void writeData(@NotNull K key, @Nullable V value) {
-        String fileName = this.keyTransformer.apply(key);
-        Gson gson = this.getGson();
-        File file = new File(this.getParentFolder(), fileName + ".json");
-        if (value == null) {
-            boolean delete = file.delete();
-            if (!delete) {
-                throw new RuntimeException("Failed to delete file: " + file.getAbsolutePath());
+        this.writeData(Collections.singletonMap(key, value));
+    }
+
+    /**
+     * Writes a batch of objects to their files.
+     * <p>
+     * The batch is handed to the storage at once, with the journal or
+     * the segmented storage it costs a single fsync.
+     * Objects whose serialized content equals the content last read or written are skipped.
+     * Null values delete their files.
+     * </p>
+     * <p>
+     * Writes of the same object never overtake each other. Older writes of the objects that are still
+     * queued, for example by the autosave, are skipped. The calling thread only waits if another thread
+     * is writing one of the objects right now.
+     * </p>
+     *
+     * @param batch Keys and objects to write.
+     */
+    public void writeData(@NotNull Map<K, V> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        Batch encoded = new Batch();
+        batch.forEach(encoded::add);
+        this.commit(encoded);
+    }
+
+    /**
+     * Saves a slice of the loaded objects without unloading them.
+     * <p>
+     * Called by the autosave task on the main thread, see {@link com.marcusslover.plus.lib.container.extra.AutoSave}.
+     * Objects are serialized right away, until the amount or the deadline is reached.
+     * Only the writing happens on the executor of this container, ordered like every other write, see {@link #writeData(Map)}.
+     * </p>
+     *
+     * @param keys     Keys of the objects, the iterator is advanced.
+     * @param maxKeys  Maximum amount of keys to process, 0 for no limit.
+     * @param deadline {@link System#nanoTime()} after which no more keys are processed.
+     * @return Amount of processed keys.
+     */
+    public int autosave(@NotNull Iterator<K> keys, int maxKeys, long deadline) {
+        Batch encoded = new Batch();
+        int processed = 0;
+        while (keys.hasNext() && (maxKeys <= 0 || processed < maxKeys)) {
+            K key = keys.next();
+            processed++;
+            V value = this.cache.get(key); // an autosave is not an access
+            if (value == null) {
+                continue; // unloaded in the meantime
+            }
+            if (this.pendingWrites.remove(key) != null || this.needsWrite(key)) {
+                encoded.add(key, value);
+            } else {
+                encoded.skipped++;
+            }
+            if (System.nanoTime() >= deadline) {
+                break;
+            }
+        }
+        if (encoded.entries.isEmpty()) {
+            this.flushStats.recordSkipped(encoded.skipped);
+            return processed;
+        }
+        CompletableFuture<Void> written;
+        try {
+            written = CompletableFuture.runAsync(() -> this.commit(encoded), this.getExecutor());
+        } catch (RejectedExecutionException e) {
+            written = CompletableFuture.runAsync(() -> this.commit(encoded), Runnable::run); // shut down, write on the calling thread
+        }
+        written.exceptionally(e -> {
+            this.plugin.getLogger().log(Level.SEVERE, "Could not autosave " + encoded.entries.size() + " objects of " + this.getClass().getSimpleName(), e);
+            return null;
+        });
+        return processed;
+    }
+
+    /**
+     * Writes a batch, in order with every other write of its objects.
+     * <p>
+     * Every serialized content gets a sequence number, see {@link #encode(Object, Object)}.
+     * Entries for which a newer content was serialized in the meantime are skipped, and a write
+     * only waits for other threads that are writing the same objects right now. This way, a write
+     * never waits for a whole queued batch, yet the newest content is always written last.
+     * A content that failed to be written stays registered as the newest one until another is
+     * serialized, so a retry can tell if it would overwrite newer data.
+     * </p>
+     *
+     * @param batch The batch.
+     */
+    private void commit(@NotNull Batch batch) {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        List<CompletableFuture<Void>> overlapping = new ArrayList<>();
+        Map<K, Encoded> current = new HashMap<>(batch.entries.size());
+        int superseded = 0;
+        synchronized (this.writing) {
+            for (Map.Entry<K, Encoded> entry : batch.entries.entrySet()) {
+                K key = entry.getKey();
+                Long latest = this.latestWrites.get(key);
+                if (latest == null || latest != entry.getValue().sequence()) {
+                    superseded++; // a newer content is written instead
+                    continue;
+                }
+                CompletableFuture<Void> other = this.writing.put(key, done);
+                if (other != null) {
+                    overlapping.add(other);
+                }
+                current.put(key, entry.getValue());
             }
+        }
+        boolean written = false;
+        try {
+            overlapping.forEach(CompletableFuture::join); // never fails, see below
+            this.write(current, batch.hashes, batch.versions, batch.skipped + superseded);
+            written = true;
+        } finally {
+            boolean committed = written;
+            synchronized (this.writing) {
+                current.forEach((key, encoded) -> {
+                    this.writing.remove(key, done);
+                    if (committed) { // a failed content stays the latest until a newer one is serialized
+                        this.latestWrites.remove(key, encoded.sequence());
+                    }
+                });
+            }
+            done.complete(null);
+        }
+    }
+
+    private void write(@NotNull Map<K, Encoded> entries, @NotNull Map<K, Long> hashes, @NotNull Map<K, Long> versions, int skipped) {
+        Map<String, byte[]> data = new HashMap<>(entries.size());
+        long bytes = 0;
+        for (Map.Entry<K, Encoded> entry : entries.entrySet()) {
+            byte[] content = entry.getValue().data();
+            data.put(this.fileName(entry.getKey()), content);
+            bytes += content == null ? 0 : content.length;
+        }
+        if (!data.isEmpty()) {
+            long start = System.nanoTime();
+            WriteConflictHandler<K, V> conflictHandler = this.conflictHandler;
+            try {
+                if (conflictHandler == null) {
+                    this.getStorage().write(data);
+                } else {
+                    this.writeChecked(entries, data, hashes, versions, conflictHandler);
+                }
+            } catch (IOException e) {
+                entries.keySet().forEach(this::markDirty); // written by the next save
+                throw new UncheckedIOException(e);
+            }
+            ContainerMetrics metrics = this.metrics;
+            if (metrics != null) {
+                metrics.recordWrite(System.nanoTime() - start);
+            }
+        }
+        for (K key : entries.keySet()) {
+            Long hash = hashes.get(key);
+            if (hash == null) {
+                this.contentHashes.remove(key);
+            } else if (this.cache.containsKey(key)) {
+                this.contentHashes.put(key, hash);
+            }
+        }
+        this.flushStats.recordWritten(data.size(), bytes);
+        this.flushStats.recordSkipped(skipped);
+    }
+
+    /**
+     * Writes a batch only if nobody else changed its objects since they were read or written last.
+     * <p>
+     * The batch is written at once if there is no conflict. Otherwise, each object is written
+     * on its own and conflicts are handed to the handler, which may be retried a few times
+     * if the stored object keeps changing. Deletions are never checked.
+     * </p>
+     *
+     * @param entries  Serialized objects of the batch.
+     * @param data     Contents by file name.
+     * @param hashes   Hashes of the contents, updated with the resolved contents.
+     * @param versions Versions of the stored objects when the batch was built.
+     * @param handler  The conflict handler.
+     * @throws IOException If the batch could not be written or a conflict could not be resolved.
+     */
+    private void writeChecked(@NotNull Map<K, Encoded> entries, @NotNull Map<String, byte[]> data,
+                              @NotNull Map<K, Long> hashes, @NotNull Map<K, Long> versions,
+                              @NotNull WriteConflictHandler<K, V> handler) throws IOException {
+        ContainerStorage storage = this.getStorage();
+        Map<String, Long> expected = new HashMap<>(entries.size());
+        entries.forEach((key, encoded) -> {
+            if (encoded.data() != null) {
+                expected.put(this.fileName(key), this.storedVersion(key, versions));
+            }
+        });
+        if (storage.compareAndWrite(data, expected)) {
             return;
         }
-        try (FileWriter fileWriter = new FileWriter(file)) {
-            gson.toJson(value, fileWriter);
-            fileWriter.flush();
-        } catch (IOException e) {
-            throw new RuntimeException(e);
+        for (Map.Entry<K, Encoded> entry : entries.entrySet()) { // someone else changed at least one of them
+            K key = entry.getKey();
+            String name = this.fileName(key);
+            byte[] content = entry.getValue().data();
+            long version = this.storedVersion(key, versions);
+            for (int attempt = 0; content != null; attempt++) {
+                if (storage.compareAndWrite(Collections.singletonMap(name, content), Collections.singletonMap(name, version))) {
+                    hashes.put(key, contentHash(content));
+                    break;
+                }
+                if (attempt == CONFLICT_RETRIES) {
+                    throw new IOException("Could not resolve the write conflict of " + name + " in " + this.getClass().getSimpleName());
+                }
+                ContainerStorage.Versioned stored = storage.readVersioned(name);
+                V storedValue = stored.data() == null ? null : this.deserialize(stored.data(), this.valueType);
+                V resolved = handler.resolve(key, this.deserialize(content, this.valueType), storedValue);
+                this.replaceLocally(key, resolved == null ? storedValue : resolved);
+                if (resolved == null) { // the stored object wins, nothing to write
+                    if (stored.data() == null) {
+                        hashes.remove(key);
+                    } else {
+                        hashes.put(key, stored.version());
+                    }
+                    break;
+                }
+                content = this.serialize(resolved);
+                version = stored.version();
+            }
+            if (content == null) {
+                storage.write(Collections.singletonMap(name, null));
+            }
         }
     }
 
+    /**
+     * Gets the version of the stored object a write expects.
+     * <p>
+     * That is the content read or written last while the object is loaded. An evicted object
+     * is unloaded before its write-back, so the version captured with the batch is used instead.
+     * </p>
+     *
+     * @param key      Key of the object.
+     * @param versions Versions of the stored objects when the batch was built.
+     * @return The expected version.
+     */
+    private long storedVersion(@NotNull K key, @NotNull Map<K, Long> versions) {
+        Long hash = this.contentHashes.get(key); // may be newer than the batch, written by an earlier one
+        if (hash == null) {
+            hash = versions.get(key);
+        }
+        return hash == null ? ContainerStorage.NO_VERSION : hash;
+    }
+
+    private void replaceLocally(@NotNull K key, @Nullable V value) {
+        V current = this.cache.get(key);
+        if (current == null) {
+            return; // not loaded
+        }
+        if (value == null) {
+            this.cleanLocally(key);
+            return;
+        }
+        this.onValueUnloaded(current);
+        this.onValueLoaded(value);
+        this.cache.put(key, value);
+        for (ContainerIndex<K, V> index : this.indexes) {
+            index.put(key, value);
+        }
+    }
+
+    /**
+     * Serializes the object and registers it as the newest content of its key.
+     *
+     * @param key   Key to the object.
+     * @param value The object, null for a deletion.
+     * @return The serialized content.
+     */
+    protected @NotNull Encoded encode(@NotNull K key, @Nullable V value) {
+        long sequence = this.writeSequence.incrementAndGet();
+        byte[] data = value == null ? null : this.serialize(value);
+        this.latestWrites.merge(key, sequence, Math::max); // older contents are not written from now on
+        return new Encoded(data, sequence);
+    }
+
+    /**
+     * Serialized content of an object.
+     *
+     * @param data     The content, null for a deletion.
+     * @param sequence Order in which the contents were serialized.
+     */
+    protected record Encoded(byte @Nullable [] data, long sequence) {
+    }
+
+    /**
+     * Serialized objects that are written together.
+     */
+    private final class Batch {
+        private final Map<K, Encoded> entries = new HashMap<>(); // written or deleted objects
+        private final Map<K, Long> hashes = new HashMap<>();
+        private final Map<K, Long> versions = new HashMap<>(); // stored versions, captured before an eviction unloads
+        private int skipped = 0;
+
+        private void add(@NotNull K key, @Nullable V value) {
+            MapContainer.this.dirty.remove(key); // changes made from now on are marked again
+            MapContainer.this.pendingWrites.remove(key); // older than this write, deletions included
+            this.addEncoded(key, MapContainer.this.encode(key, value));
+        }
+
+        private void addEncoded(@NotNull K key, @NotNull Encoded encoded) {
+            MapContainer<K, V> container = MapContainer.this;
+            byte[] data = encoded.data();
+            Long previous = container.contentHashes.get(key);
+            if (previous != null) {
+                this.versions.put(key, previous);
+            }
+            if (data != null) {
+                long hash = contentHash(data);
+                if (previous != null && previous == hash) {
+                    synchronized (container.writing) {
+                        if (!container.writing.containsKey(key)) { // otherwise the file changes right now
+                            container.latestWrites.remove(key, encoded.sequence()); // older queued writes stay skipped
+                            this.skipped++; // same content as the file
+                            return;
+                        }
+                    }
+                }
+                this.hashes.put(key, hash);
+            }
+            this.entries.put(key, encoded);
+        }
+    }
+
+    /**
+     * Computes the hash used to detect if the content of an object changed.
+     *
+     * @param data The serialized object.
+     * @return 64-bit hash of the content.
+     */
+    protected static long contentHash(byte @NotNull [] data) {
+        return ContainerStorage.contentVersion(data); // the same as the version of the stored entry
+    }
+
+    @Override
+    public @NotNull Map<String, byte[]> captureSnapshot() {
+        Map<String, byte[]> snapshot = new HashMap<>(this.cache.size());
+        this.cache.forEach((key, value) -> snapshot.put(this.fileName(key), this.serialize(value)));
+        return snapshot;
+    }
+
+    /**
+     * Reads every entry of the storage for a snapshot, and the compression dictionaries.
+     *
+     * @param action Called with the name and the content of each file.
+     * @throws IOException If the files could not be read.
+     */
+    @Override
+    public void exportStored(@NotNull BiConsumer<String, byte[]> action) throws IOException {
+        super.exportStored(action);
+        if (this.parentFolder == null || !this.parentFolder.isDirectory()) {
+            return; // not stored on this disk
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(this.parentFolder.toPath(), CompressedCodec.DICTIONARY_FILE_PREFIX + "*")) {
+            for (Path path : stream) {
+                action.accept(path.getFileName().toString(), Files.readAllBytes(path));
+            }
+        }
+    }
+
+    @Override
+    protected long cachedEntries() {
+        return this.cache.size();
+    }
+
     /**
      * Gets all the loaded objects from the cache.
      *
@@ -1,21 +1,31 @@
 package com.marcusslover.plus.lib.container.type;
 
-import com.google.gson.Gson;
+import com.marcusslover.plus.lib.common.ReadWriteLock;
 import com.marcusslover.plus.lib.container.AbstractContainer;
+import com.marcusslover.plus.lib.container.metrics.ContainerMetrics;
+import lombok.AccessLevel;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Container that represents a single object.
- * The object is serialized to a single JSON file.
+ * The object is serialized to a single file, see {@link #getCodec()}.
  * The file name is final and can be changed in the constructor.
+ * The file is always overwritten, conflicts with other servers are only detected by a
+ * {@link MapContainer} with a {@link com.marcusslover.plus.lib.container.extra.WriteConflictHandler}.
  *
  * @param <V> Value type.
  */
@@ -24,7 +34,14 @@ import java.io.IOException;
 public abstract class SingleContainer<V> extends AbstractContainer<V> {
     protected final Class<V> valueType;
     protected final String fileName;
-    protected @Nullable V cache = null;
+    protected volatile @Nullable V cache = null;
+    @Getter(AccessLevel.NONE)
+    protected final ReadWriteLock lock = new ReadWriteLock();
+    @Getter(AccessLevel.NONE)
+    protected final AtomicLong writeSequence = new AtomicLong(); // order in which contents were serialized
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    protected long writtenSequence = 0; // newest written content, guarded by writeSequence
 
     /**
      * Creates a new instance of an object.
@@ -67,34 +84,81 @@ public abstract class SingleContainer<V> extends AbstractContainer<V> {
 
     /**
      * Loads an object from the file.
+     * <p>
+     * Safe to call from any thread. Concurrent calls share a single read of the file.
+     * </p>
      *
      * @return The object.
      */
     public @NotNull V loadData() {
-        if (this.cache != null) {
-            return this.cache;
+        V cached = this.cache;
+        ContainerMetrics metrics = this.metrics;
+        if (cached != null) {
+            if (metrics != null) {
+                metrics.recordHit();
+            }
+            return cached;
+        }
+        if (metrics != null) {
+            metrics.recordMiss();
+        }
+        this.lock.writeLock();
+        try {
+            if (this.cache != null) { // loaded while we were waiting
+                return this.cache;
+            }
+            V data = this.readData();
+            this.storeLocally(data);
+            return data;
+        } finally {
+            this.lock.writeUnlock();
         }
-        V data = this.readData();
-        this.storeLocally(data);
-        return data;
+    }
+
+    /**
+     * Same as {@link #loadData()}, but runs on the executor of this container.
+     *
+     * @return Future of the object.
+     */
+    public @NotNull CompletableFuture<V> loadDataAsync() {
+        return CompletableFuture.supplyAsync(this::loadData, this.getExecutor());
+    }
+
+    /**
+     * Same as {@link #saveData()}, but runs on the executor of this container.
+     *
+     * @return Future completed once the data is saved and unloaded.
+     */
+    public @NotNull CompletableFuture<Void> saveDataAsync() {
+        return CompletableFuture.runAsync(this::saveData, this.getExecutor());
     }
 
     @Override
     public void loadAllData() {
-        V v = this.readData();
-        this.storeLocally(v);
+        this.lock.writeLock();
+        try {
+            V v = this.readData();
+            this.storeLocally(v);
+        } finally {
+            this.lock.writeUnlock();
+        }
     }
 
     /**
      * Unloads the data from the cache and saves it to the file.
      */
     public void saveData() {
-        if (this.cache == null) {
-            return;
+        this.lock.writeLock();
+        try {
+            if (this.cache == null) {
+                return;
+            }
+            V data = this.retrieveLocally();
+            this.writeData(data);
+            this.cleanLocally();
+        } finally {
+            this.lock.writeUnlock();
         }
-        V data = this.retrieveLocally();
-        this.writeData(data);
-        this.cleanLocally();
     }
 
 
@@ -145,24 +209,48 @@ public abstract class SingleContainer<V> extends AbstractContainer<V> {
      * @return The object.
      */
     public @NotNull V readData() {
-        V data;
-        Gson gson = this.getGson();
-        File file = new File(this.getParentFolder(), this.fileName + ".json");
-        if (file.exists()) {
-            try (FileReader fileReader = new FileReader(file)) {
-                data = gson.fromJson(fileReader, this.valueType);
-            } catch (IOException e) {
-                plugin.getLogger().severe("Could not read file: " + file.getAbsolutePath());
-                throw new RuntimeException(e);
+        String extension = this.getCodec().extension();
+        V data = this.read(this.fileName + extension);
+        for (String foreign : this.foreignExtensions()) { // written by another codec
+            if (data != null) {
+                break;
             }
-            return data;
-        } else {
-            return this.emptyValue();
+            data = this.read(this.fileName + foreign);
+            if (data != null) { // migrate to the current codec, in a single batch
+                long sequence = this.writeSequence.incrementAndGet();
+                Map<String, byte[]> batch = new HashMap<>();
+                batch.put(this.fileName + extension, this.serialize(data));
+                batch.put(this.fileName + foreign, null);
+                this.write(batch, 1, sequence);
+            }
+        }
+        return data != null ? data : this.emptyValue();
+    }
+
+    private @Nullable V read(@NotNull String fileName) {
+        try {
+            long start = System.nanoTime();
+            byte[] data = this.getStorage().read(fileName);
+            if (data == null) {
+                return null;
+            }
+            V value = this.deserialize(data, this.valueType);
+            ContainerMetrics metrics = this.metrics;
+            if (metrics != null) {
+                metrics.recordRead(System.nanoTime() - start, data.length);
+            }
+            return value;
+        } catch (IOException e) {
+            this.plugin.getLogger().severe("Could not read file: " + fileName);
+            throw new UncheckedIOException(e);
         }
     }
 
     /**
-     * Writes the data to the file.
+     * Writes the data to the storage.
+     * <p>
+     * The file is replaced atomically, so a crash never leaves a truncated file behind.
+     * </p>
      * <p>
      * This function does not unload anything from the cache.
      * The cache is not affected by this function.
@@ -172,21 +260,74 @@ public abstract class SingleContainer<V> extends AbstractContainer<V> {
      * @param value Object to write.
      */
     public void writeData(@Nullable V value) {
-        Gson gson = this.getGson();
-        File file = new File(this.getParentFolder(), this.fileName + ".json");
+        String name = this.fileName + this.getCodec().extension();
+        long sequence = this.writeSequence.incrementAndGet();
         if (value == null) {
-            boolean delete = file.delete();
-            if (!delete) {
-                throw new RuntimeException("Could not delete file: " + file.getAbsolutePath());
-            }
+            this.write(Collections.singletonMap(name, null), 0, sequence);
             return;
         }
-        try (FileWriter fileWriter = new FileWriter(file)) {
-            gson.toJson(value, fileWriter);
-            fileWriter.flush();
-        } catch (IOException e) {
-            throw new RuntimeException(e);
+        this.write(Collections.singletonMap(name, this.serialize(value)), 1, sequence);
+    }
+
+    /**
+     * Saves the loaded object without unloading it.
+     * <p>
+     * Called by the autosave task on the main thread, see {@link com.marcusslover.plus.lib.container.extra.AutoSave}.
+     * The object is serialized right away, like a map container does with its objects.
+     * Only the writing happens on the executor of this container, and it never overwrites a newer write.
+     * </p>
+     *
+     * @return Future completed once the object is written, right away if nothing is loaded.
+     */
+    public @NotNull CompletableFuture<Void> autosave() {
+        V value = this.cache;
+        if (value == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        long sequence = this.writeSequence.incrementAndGet();
+        Map<String, byte[]> batch = Collections.singletonMap(this.fileName + this.getCodec().extension(), this.serialize(value));
+        try {
+            return CompletableFuture.runAsync(() -> this.write(batch, 1, sequence), this.getExecutor());
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.runAsync(() -> this.write(batch, 1, sequence), Runnable::run); // shut down, write on the calling thread
         }
     }
-}
 
+    private void write(@NotNull Map<String, byte[]> batch, int objects, long sequence) {
+        long bytes = 0;
+        for (byte[] data : batch.values()) {
+            bytes += data == null ? 0 : data.length;
+        }
+        synchronized (this.writeSequence) { // only contended while an autosave writes the file
+            if (sequence < this.writtenSequence) {
+                return; // serialized before the content that is already written
+            }
+            try {
+                long start = System.nanoTime();
+                this.getStorage().write(batch);
+                ContainerMetrics metrics = this.metrics;
+                if (metrics != null && objects > 0) {
+                    metrics.recordWrite(System.nanoTime() - start);
+                }
+                this.flushStats.recordWritten(objects, bytes);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            this.writtenSequence = sequence;
+        }
+    }
+
+    @Override
+    public @NotNull Map<String, byte[]> captureSnapshot() {
+        V value = this.cache;
+        if (value == null) {
+            return Collections.emptyMap();
+        }
+        return Collections.singletonMap(this.fileName + this.getCodec().extension(), this.serialize(value));
+    }
+
+    @Override
+    protected long cachedEntries() {
+        return this.cache == null ? 0 : 1;
+    }
+}
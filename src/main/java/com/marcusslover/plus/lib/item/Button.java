@@ -12,6 +12,8 @@ import org.jetbrains.annotations.Nullable;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 /**
  * Represents a button in a menu.
@@ -20,10 +22,22 @@ import java.util.UUID;
 @Data
 @Accessors(fluent = true, chain = true)
 public class Button {
+    /**
+     * Refresh interval in ticks of ticking buttons in menus without {@link LiveMenu}.
+     */
+    public static final long DEFAULT_REFRESH_INTERVAL = 20;
+    /**
+     * Refresh interval that uses the interval of the menu.
+     */
+    public static final long MENU_REFRESH_INTERVAL = -1;
+
     private @NotNull Button.DetectableArea detectableArea; // The area where the button is detectable
     private @Nullable ItemFactory itemFactory; // (4.0.10) The item factory
+    private @Nullable AsyncItemFactory asyncItemFactory; // Replaces the item of the factory once done
     private @Nullable Canvas.ClickContext clickContext; // The click event of the button
     private boolean populated = false; // If the button has been populated via viewing strategy
+    private long refreshInterval = 0; // Ticks between two refreshes of the item, 0 to never refresh
+    private boolean personalized = false; // If the item differs per viewer of a shared canvas
 
     /**
      * Creates a button with the given coordinates.
@@ -170,18 +184,36 @@ public class Button {
     // for backwards compatibility (4.0.9)
     public Button setItem(@Nullable Item item) {
         this.itemFactory = player -> item;
+        this.asyncItemFactory = null;
         return this;
     }
 
     // for backwards compatibility (4.0.9)
     public Button item(@Nullable Item item) {
         this.itemFactory = player -> item;
+        this.asyncItemFactory = null;
         return this;
     }
 
     // for backwards compatibility (4.0.9)
     public Button item(@Nullable ItemFactory item) {
         this.itemFactory = player -> item != null ? item.create(player) : null;
+        this.asyncItemFactory = null;
+        return this;
+    }
+
+    /**
+     * Sets an item that is created off the main thread.
+     * The placeholder is shown until the item is done, then only the slots of the button are set.
+     * If the menu is closed or drawn again in the meantime, the result is dropped.
+     *
+     * @param placeholder The item shown while waiting
+     * @param item        The async item factory
+     * @return The button
+     */
+    public @NotNull Button itemAsync(@Nullable Item placeholder, @NotNull AsyncItemFactory item) {
+        this.itemFactory = player -> placeholder;
+        this.asyncItemFactory = item;
         return this;
     }
 
@@ -203,8 +235,7 @@ public class Button {
             int y2 = transformY(max_or_y);
             return this.slot(x1, y1, x2, y2);
         } else {
-            this.detectableArea = DetectableArea.of(min_or_x, max_or_y);
-            return this;
+            return this.detectableArea(DetectableArea.of(min_or_x, max_or_y));
         }
     }
 
@@ -213,7 +244,29 @@ public class Button {
         int minY = Math.min(y1, y2);
         int maxX = Math.max(x1, x2);
         int maxY = Math.max(y1, y2);
-        this.detectableArea = DetectableArea.of(new Vector(minX, 0, minY), new Vector(maxX, 0, maxY));
+        return this.detectableArea(DetectableArea.of(new Vector(minX, 0, minY), new Vector(maxX, 0, maxY)));
+    }
+
+    /**
+     * Marks the button as ticking, its item is refreshed with the interval of the menu.
+     *
+     * @return The button
+     * @see LiveMenu
+     */
+    public @NotNull Button ticking() {
+        this.refreshInterval = MENU_REFRESH_INTERVAL;
+        return this;
+    }
+
+    /**
+     * Sets the area of the button.
+     * Canvases holding the button notice the new area on their next lookup.
+     *
+     * @param detectableArea The area
+     * @return The button
+     */
+    public @NotNull Button detectableArea(@NotNull DetectableArea detectableArea) {
+        this.detectableArea = detectableArea;
         return this;
     }
 
@@ -224,9 +277,7 @@ public class Button {
      * @return True if the slot is within the button
      */
     public boolean within(int slot) {
-        int x = transformX(slot);
-        int y = transformY(slot);
-        return this.detectableArea.within(new Vector(x, 0, y), true);
+        return this.detectableArea.within(transformX(slot), transformY(slot));
     }
 
     /**
@@ -266,6 +317,66 @@ public class Button {
         @Nullable Item create(@NotNull Player player);
     }
 
+    /**
+     * Represents a factory for items that take a while to create, for example because of a database lookup.
+     */
+    @FunctionalInterface
+    public interface AsyncItemFactory {
+        /**
+         * Starts creating an item for the given player.
+         * Called on the main thread, the future may complete on any thread.
+         *
+         * @param player The player
+         * @return The future of the item
+         */
+        @NotNull CompletableFuture<@Nullable Item> create(@NotNull Player player);
+
+        /**
+         * Checks if the futures of this factory may be cancelled once their item is not needed anymore,
+         * for example because the menu was closed.
+         * Factories that return a future shared by several players, like a cached one, must return false.
+         *
+         * @return True if every future belongs to a single item
+         */
+        default boolean cancellable() {
+            return false;
+        }
+
+        /**
+         * Creates the items with a regular factory on the given executor.
+         * The factory must not use any API that is only safe on the main thread.
+         * An item that is not needed anymore by the time the executor gets to it is not created.
+         *
+         * @param factory  The factory
+         * @param executor The executor
+         * @return The async factory
+         */
+        static @NotNull AsyncItemFactory offThread(@NotNull ItemFactory factory, @NotNull Executor executor) {
+            return new AsyncItemFactory() {
+                @Override
+                public @NotNull CompletableFuture<@Nullable Item> create(@NotNull Player player) {
+                    CompletableFuture<Item> future = new CompletableFuture<>();
+                    executor.execute(() -> {
+                        if (future.isDone()) {
+                            return; // cancelled while queued
+                        }
+                        try {
+                            future.complete(factory.create(player));
+                        } catch (Throwable e) {
+                            future.completeExceptionally(e);
+                        }
+                    });
+                    return future;
+                }
+
+                @Override
+                public boolean cancellable() {
+                    return true;
+                }
+            };
+        }
+    }
+
     /**
      * Represents a detectable area of a button.
      * This is used to detect if a player clicked on a button.
@@ -346,6 +457,22 @@ public class Button {
             return IRegion.super.within(vector, strategy);
         }
 
+        /**
+         * Checks if the given coordinates are within the area.
+         * Same as {@link #within(Vector, boolean)} excluding the y-axis, without creating any vectors.
+         *
+         * @param x The x coordinate
+         * @param y The y coordinate
+         * @return True if the coordinates are within the area
+         */
+        public boolean within(int x, int y) {
+            double minX = Math.min(this.min.getX(), this.max.getX());
+            double maxX = Math.max(this.min.getX(), this.max.getX());
+            double minZ = Math.min(this.min.getZ(), this.max.getZ());
+            double maxZ = Math.max(this.min.getZ(), this.max.getZ());
+            return x >= minX && x <= maxX && y >= minZ && y <= maxZ;
+        }
+
         /**
          * Check if the matrix is a single point.
          *
@@ -5,8 +5,10 @@ import com.marcusslover.plus.lib.item.Canvas.BasicPopulator.ViewStrategy.ViewStr
 import com.marcusslover.plus.lib.text.Text;
 import lombok.AccessLevel;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.Setter;
+import lombok.ToString;
 import lombok.experimental.Accessors;
 import net.kyori.adventure.text.Component;
 import org.bukkit.Bukkit;
@@ -21,7 +23,10 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.function.Predicate;
 import java.util.function.Supplier;
 
 /**
@@ -31,9 +36,23 @@ import java.util.function.Supplier;
 @Data
 @Accessors(fluent = true, chain = true)
 public class Canvas implements InventoryHolder { // Inventory holder to keep track of the inventory.
+    private static final int MAX_SLOTS = 54; // 6 rows
+
     // buttons of the canvas
     @Getter(AccessLevel.PACKAGE)
     private final @NotNull List<Button> buttons = new ArrayList<>();
+
+    // first button of each slot, built lazily on the first click
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private Button @Nullable [] slotTable = null;
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private final @NotNull List<Button.DetectableArea> slotTableAreas = new ArrayList<>(); // areas the table was built from
     private final @NotNull LinkedList<ItemDecorator> decorators = new LinkedList<>();
 
     // means literally nothing but used for some hacky stuff
@@ -51,6 +70,65 @@ public class Canvas implements InventoryHolder { // Inventory holder to keep tra
     @Getter(AccessLevel.PACKAGE)
     @Setter(AccessLevel.PACKAGE)
     private @Nullable Inventory assosiatedInventory = null;
+
+    // items as last sent to the viewer, only changed slots are sent again
+    @Getter(AccessLevel.PACKAGE)
+    @Setter(AccessLevel.PACKAGE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private @Nullable ItemStack @Nullable [] lastRendered = null;
+    // decorations only and the index of the button drawn on top of each slot, -1 for none
+    @Getter(AccessLevel.PACKAGE)
+    @Setter(AccessLevel.PACKAGE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private @Nullable ItemStack @Nullable [] background = null;
+    @Getter(AccessLevel.PACKAGE)
+    @Setter(AccessLevel.PACKAGE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private int @Nullable [] renderedBy = null;
+    // shared by all viewers of the menu, see SharedCanvas
+    @Getter(AccessLevel.PACKAGE)
+    @Setter(AccessLevel.PACKAGE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private boolean shared = false;
+    @Getter(AccessLevel.PACKAGE)
+    @Setter(AccessLevel.PACKAGE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private int viewers = 0;
+    // update cycle of the menu the shared canvas was last built or updated in, see Menu#updateCycle()
+    @Getter(AccessLevel.PACKAGE)
+    @Setter(AccessLevel.PACKAGE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private long updateCycle = 0;
+    // ticking buttons of the last render
+    @Getter(AccessLevel.PACKAGE)
+    @Setter(AccessLevel.PACKAGE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private @NotNull List<MenuRefreshTask.Ticker> tickers = Collections.emptyList();
+    // items of async factories still being created
+    @Getter(AccessLevel.PACKAGE)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private final @NotNull List<CompletableFuture<?>> pendingItems = new ArrayList<>();
+    // last items of async factories, drawn instead of the placeholder while the next one is created
+    @Getter(AccessLevel.PACKAGE)
+    @Setter(AccessLevel.PACKAGE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private @NotNull Map<Button, @Nullable ItemStack> resolvedItems = new IdentityHashMap<>();
+    // off-screen inventory the next frame is drawn into
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private @Nullable Inventory shadowInventory = null;
     private @Nullable ClickContext genericClick = null, selfInventory = null, closeInventory = null;
     private @Nullable DragContext genericDrag = null;
 
@@ -116,6 +194,105 @@ public class Canvas implements InventoryHolder { // Inventory holder to keep tra
         return Bukkit.createInventory(this, this.rows * 9, this.title);
     }
 
+    /**
+     * Gets the empty off-screen inventory the canvas is rendered into.
+     * It has no viewers, so changing it sends nothing to the players.
+     *
+     * @param size the size of the inventory
+     * @return the cleared inventory
+     */
+    @NotNull Inventory shadowInventory(int size) {
+        Inventory shadow = this.shadowInventory;
+        if (shadow == null || shadow.getSize() != size) {
+            shadow = Bukkit.createInventory(null, size);
+            this.shadowInventory = shadow;
+        } else {
+            shadow.clear();
+        }
+        return shadow;
+    }
+
+    /**
+     * Sets the item of a button in the inventory, after it was drawn.
+     * Slots drawn over by a later button are left alone, without an item the decoration below is shown again.
+     * Only the slots that changed are sent.
+     *
+     * @param index  the index of the button in the canvas
+     * @param button the button
+     * @param stack  the new item or null
+     * @return false if the canvas is not drawn
+     */
+    boolean patch(int index, @NotNull Button button, @Nullable ItemStack stack) {
+        Inventory inventory = this.assosiatedInventory;
+        ItemStack[] last = this.lastRendered;
+        int[] renderedBy = this.renderedBy;
+        ItemStack[] background = this.background;
+        if (inventory == null || last == null || renderedBy == null || background == null) {
+            return false;
+        }
+        ItemStack item = stack == null ? null : stack.clone(); // the factory may reuse the item
+        if (button.asyncItemFactory() != null) {
+            this.resolvedItems.put(button, item); // shown by the next draw until its item is done
+        }
+        patch(index, button.toSlots(), item, last, renderedBy, background, slot -> inventory.setItem(slot, last[slot]));
+        return true;
+    }
+
+    /**
+     * Sets the item of a button in the last drawn frame.
+     * Slots drawn over by a later button are left alone, without an item the decoration below is shown again.
+     *
+     * @param index      the index of the button in the canvas
+     * @param slots      the slots of the button
+     * @param item       the new item or null
+     * @param last       the last drawn frame
+     * @param renderedBy the index of the button drawn on top of each slot, -1 for none
+     * @param background the decorations
+     * @param changed    called with each slot whose item changed
+     * @param <T>        the item type
+     * @return the amount of changed slots
+     */
+    static <T> int patch(int index, @NotNull Set<Integer> slots, @Nullable T item, @Nullable T @NotNull [] last, int @NotNull [] renderedBy, @Nullable T @NotNull [] background, @NotNull IntConsumer changed) {
+        int count = 0;
+        for (int slot : slots) {
+            if (slot < 0 || slot >= last.length || renderedBy[slot] > index) {
+                continue; // a later button is drawn on top
+            }
+            T next;
+            if (item != null) {
+                next = item;
+                renderedBy[slot] = index;
+            } else if (renderedBy[slot] == index) {
+                next = background[slot];
+                renderedBy[slot] = -1;
+            } else {
+                continue;
+            }
+            if (!Objects.equals(last[slot], next)) {
+                last[slot] = next;
+                changed.accept(slot);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Drops the results of async item factories that are not done yet.
+     */
+    void cancelPendingItems() {
+        this.pendingItems.forEach(future -> future.cancel(false));
+        this.pendingItems.clear();
+    }
+
+    /**
+     * Stops the refreshes of the ticking buttons.
+     */
+    void cancelTickers() {
+        this.tickers.forEach(MenuRefreshTask.Ticker::cancel);
+        this.tickers = Collections.emptyList();
+    }
+
     /**
      * Set the self-inventory action.
      * This action is called when the player clicks on the inventory.
@@ -172,7 +349,7 @@ public class Canvas implements InventoryHolder { // Inventory holder to keep tra
      * @return the click context associated with the button
      */
     public @NotNull ClickContext button(@NotNull Button button, @Nullable ButtonClick buttonClick) {
-        this.buttons.add(button);
+        this.addButton(button);
         ClickContext context = new ClickContext(this, buttonClick, null);
         button.clickContext(context);
         return context;
@@ -185,10 +362,97 @@ public class Canvas implements InventoryHolder { // Inventory holder to keep tra
      * @return the canvas
      */
     public @NotNull Canvas button(@NotNull Button button) {
-        this.buttons.add(button);
+        this.addButton(button);
         return this;
     }
 
+    /**
+     * Removes a button from the canvas.
+     *
+     * @param button the button
+     */
+    void removeButton(@NotNull Button button) {
+        if (this.buttons.remove(button)) {
+            this.slotTable = null;
+        }
+    }
+
+    /**
+     * Removes all buttons matching the filter.
+     *
+     * @param filter the filter
+     */
+    void removeButtons(@NotNull Predicate<Button> filter) {
+        if (this.buttons.removeIf(filter)) {
+            this.slotTable = null;
+        }
+    }
+
+    private void addButton(@NotNull Button button) {
+        boolean valid = this.slotTableValid();
+        this.buttons.add(button);
+        Button[] table = this.slotTable;
+        if (valid && table != null) {
+            this.fillSlots(table, button); // earlier buttons keep their slots
+            this.slotTableAreas.add(button.detectableArea());
+        }
+    }
+
+    /**
+     * Checks if the slot table still matches the buttons.
+     * Areas are replaced, never changed, when a button moves, so comparing them is enough.
+     *
+     * @return True if the table can be used
+     */
+    private boolean slotTableValid() {
+        if (this.slotTable == null || this.slotTableAreas.size() != this.buttons.size()) {
+            return false;
+        }
+        for (int i = 0; i < this.buttons.size(); i++) {
+            if (this.buttons.get(i).detectableArea() != this.slotTableAreas.get(i)) {
+                return false; // moved, for example by a page button
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Find the button at the given slot.
+     * If buttons overlap, the first added button wins.
+     *
+     * @param slot the raw slot
+     * @return the button or null if there is no button at the slot
+     */
+    public @Nullable Button buttonAt(int slot) {
+        if (slot < 0 || slot >= MAX_SLOTS) { // not part of a chest, nothing to look up
+            for (Button button : this.buttons) {
+                if (button.within(slot)) {
+                    return button;
+                }
+            }
+            return null;
+        }
+        Button[] table = this.slotTable;
+        if (table == null || !this.slotTableValid()) {
+            table = new Button[MAX_SLOTS];
+            this.slotTableAreas.clear();
+            for (Button button : this.buttons) {
+                this.fillSlots(table, button);
+                this.slotTableAreas.add(button.detectableArea());
+            }
+            this.slotTable = table;
+        }
+        return table[slot];
+    }
+
+    private void fillSlots(Button @NotNull [] table, @NotNull Button button) {
+        for (int slot = 0; slot < MAX_SLOTS; slot++) {
+            if (table[slot] == null && button.within(slot)) {
+                table[slot] = button;
+            }
+        }
+    }
+
     /**
      * Adds a new layer of decorating to the canvas.
      *
@@ -270,6 +534,14 @@ public class Canvas implements InventoryHolder { // Inventory holder to keep tra
         // clear everything that's possible to clear
         for (Button button : this.buttons) button.clickContext(null);
         this.buttons.clear();
+        this.slotTable = null;
+        this.cancelTickers();
+        this.cancelPendingItems();
+        this.resolvedItems.clear();
+        this.lastRendered = null;
+        this.background = null;
+        this.renderedBy = null;
+        this.shadowInventory = null;
         this.decorators.clear();
         this.title = null;
         this.menuUpdateContext = null;
@@ -0,0 +1,21 @@
+package com.marcusslover.plus.lib.item;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Sets how often the ticking buttons of a menu are refreshed, see {@link Button#ticking()}.
+ * Only the item factories of ticking buttons are called again, the rest of the menu stays as it is.
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface LiveMenu {
+    /**
+     * The interval between two refreshes of a ticking button.
+     *
+     * @return The interval in ticks.
+     */
+    long interval() default Button.DEFAULT_REFRESH_INTERVAL;
+}
@@ -30,6 +30,21 @@ public abstract class Menu implements IMenu {
     @Setter(AccessLevel.NONE)
     private @Nullable MenuManager manager;
 
+    // canvas of all viewers, see SharedCanvas
+    @Getter(AccessLevel.PACKAGE)
+    @Setter(AccessLevel.PACKAGE)
+    @ToString.Exclude
+    private @Nullable Canvas sharedCanvas = null;
+    // bumped by every update, all viewers of performUpdate share one, see updateCycle()
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    private long updateCycle = 0;
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    private boolean updatingViewers = false;
+
     void hookManager(@Nullable MenuManager manager) {
         this.manager = manager;
     }
@@ -56,7 +71,7 @@ public abstract class Menu implements IMenu {
      * All current menu viewers will have their menu updated.
      */
     public void performUpdate() {
-        this.canvasMap.keySet().stream().toList().forEach(uuid -> performUpdate(uuid, false, null)); // update all viewers
+        this.performUpdate(false, null);
     }
 
     /**
@@ -71,7 +86,13 @@ public abstract class Menu implements IMenu {
      * @param ctx   The context of the update.
      */
     public void performUpdate(boolean force, @Nullable Menu.UpdateContext ctx) {
-        this.canvasMap.keySet().stream().toList().forEach(uuid -> performUpdate(uuid, force, ctx)); // update all viewers
+        this.updateCycle++; // one cycle for all viewers
+        this.updatingViewers = true;
+        try {
+            this.canvasMap.keySet().stream().toList().forEach(uuid -> performUpdate(uuid, force, ctx)); // update all viewers
+        } finally {
+            this.updatingViewers = false;
+        }
     }
 
     /**
@@ -92,6 +113,84 @@ public abstract class Menu implements IMenu {
         this.send(viewer, force, ctx); // update the menu
     }
 
+    /**
+     * Gets the update cycle the menu is sent in.
+     * All viewers updated by {@link #performUpdate(boolean, UpdateContext)} share one cycle,
+     * any other send is a cycle of its own. A shared canvas is built or updated once per cycle.
+     *
+     * @return The update cycle.
+     */
+    long updateCycle() {
+        return this.updatingViewers ? this.updateCycle : ++this.updateCycle;
+    }
+
+    /**
+     * Sets the canvas a viewer looks at.
+     * The viewers of a shared canvas are counted, the previous canvas is released after joining
+     * the new one, so a shared canvas is never cleared while in use.
+     *
+     * @param viewer The viewer.
+     * @param canvas The canvas.
+     */
+    void view(@NotNull UUID viewer, @NotNull Canvas canvas) {
+        Canvas previous = this.canvasMap.put(viewer, canvas);
+        if (previous == canvas) {
+            return; // already counted
+        }
+        if (canvas.shared()) {
+            canvas.viewers(canvas.viewers() + 1);
+        }
+        if (previous != null) {
+            this.release(previous);
+        }
+    }
+
+    /**
+     * Removes the canvas of a viewer that left.
+     *
+     * @param viewer The viewer.
+     * @return The canvas, null if the player was not viewing the menu.
+     */
+    @Nullable Canvas leave(@NotNull UUID viewer) {
+        Canvas canvas = this.canvasMap.remove(viewer);
+        if (canvas != null) {
+            this.release(canvas); // help the gc
+        }
+        return canvas;
+    }
+
+    /**
+     * Checks if the canvas is the one the viewer currently looks at.
+     * A viewer of a shared canvas may have moved on to a newer one,
+     * events of the inventory of the old canvas are stale then.
+     *
+     * @param viewer The viewer.
+     * @param canvas The canvas.
+     * @return True if the canvas is current.
+     */
+    boolean viewing(@NotNull UUID viewer, @NotNull Canvas canvas) {
+        return !canvas.shared() || this.canvasMap.get(viewer) == canvas;
+    }
+
+    /**
+     * Releases the canvas of a viewer that left.
+     * A shared canvas is only cleared once its last viewer left.
+     *
+     * @param canvas The canvas.
+     */
+    private void release(@NotNull Canvas canvas) {
+        if (canvas.shared()) {
+            canvas.viewers(canvas.viewers() - 1);
+            if (canvas.viewers() > 0) {
+                return; // still in use
+            }
+            if (this.sharedCanvas == canvas) {
+                this.sharedCanvas = null;
+            }
+        }
+        canvas.clear();
+    }
+
     @Override
     public @NotNull <T extends CommandSender> IMenu send(@NotNull T target) {
         return this.send(target, false, null);
@@ -22,13 +22,24 @@ import org.bukkit.event.inventory.InventoryDragEvent;
 import org.bukkit.event.player.PlayerQuitEvent;
 import org.bukkit.inventory.Inventory;
 import org.bukkit.inventory.InventoryView;
+import org.bukkit.inventory.ItemStack;
 import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.IntConsumer;
 
 @SuppressWarnings({"UnusedReturnValue"})
 public final class MenuManager implements Listener {
@@ -38,8 +49,13 @@ public final class MenuManager implements Listener {
     // Global click context
     private @Nullable Canvas.GenericClick genericClick = null;
 
+    // Refreshes of ticking buttons
+    private final @NotNull MenuRefreshTask refreshTask;
+    private @Nullable BukkitTask refreshTaskHandle = null;
+
     public MenuManager(@NotNull Plugin plugin) {
         this.plugin = plugin;
+        this.refreshTask = new MenuRefreshTask(this::refreshButton, this::stopRefreshTask, plugin.getLogger());
         Bukkit.getPluginManager().registerEvents(this, plugin);
     }
 
@@ -56,12 +72,7 @@ public final class MenuManager implements Listener {
     @EventHandler(priority = EventPriority.HIGHEST)
     public void onQuit(PlayerQuitEvent event) {
         Player player = event.getPlayer();
-        this.menus.forEach(menu -> {
-            Canvas remove = menu.canvasMap().remove(player.getUniqueId());
-            if (remove != null) {
-                remove.clear();
-            }
-        });
+        this.menus.forEach(menu -> menu.leave(player.getUniqueId()));
     }
 
     @EventHandler
@@ -76,6 +87,8 @@ public final class MenuManager implements Listener {
 
         // empty or invalid inventory shouldn't be handled
         if (canvas.assosiatedInventory() == null) return;
+        // the viewer already moved on to a newer shared canvas
+        if (!canvas.assosiatedMenu().viewing(player.getUniqueId(), canvas)) return;
 
         // handle the close event action
         ClickContext closeInventory = canvas.closeInventory();
@@ -97,10 +110,7 @@ public final class MenuManager implements Listener {
 
         Menu menu = canvas.assosiatedMenu();
         menu.preClose(canvas, player); // call the preClose method so developers can handle it
-        Canvas remove = menu.canvasMap().remove(player.getUniqueId());
-        if (remove != null) {
-            remove.clear(); // help the gc
-        }
+        menu.leave(player.getUniqueId());
         menu.close(canvas, player); // call the close method so developers can handle it
     }
 
@@ -171,30 +181,29 @@ public final class MenuManager implements Listener {
             return;
         }
 
-        canvas.buttons().stream()
-            .filter(button -> button.within(slot))
-            .findFirst()
-            .ifPresent(button -> {
-                Player player = (Player) event.getWhoClicked();
-                ClickContext context = button.clickContext();
-                if (context == null) {
-                    return;
-                }
-                Canvas.ButtonClick click = context.click();
-                if (click == null) {
-                    return;
-                }
-                try {
-                    ButtonClickContext ctx = ButtonClickContext.of(player, item, event, canvas);
-                    click.onClick(ctx);
-                } catch (Throwable e) {
-                    if (context.throwableConsumer() != null) {
-                        context.throwableConsumer().accept(e);
-                    } else {
-                        plugin.getLogger().warning(e.getMessage());
-                    }
-                }
-            });
+        Button button = canvas.buttonAt(slot);
+        if (button == null) {
+            return;
+        }
+        Player player = (Player) event.getWhoClicked();
+        ClickContext context = button.clickContext();
+        if (context == null) {
+            return;
+        }
+        Canvas.ButtonClick click = context.click();
+        if (click == null) {
+            return;
+        }
+        try {
+            ButtonClickContext ctx = ButtonClickContext.of(player, item, event, canvas);
+            click.onClick(ctx);
+        } catch (Throwable e) {
+            if (context.throwableConsumer() != null) {
+                context.throwableConsumer().accept(e);
+            } else {
+                plugin.getLogger().warning(e.getMessage());
+            }
+        }
     }
 
     private void handleOnClick(InventoryClickEvent event, Canvas canvas, Item item, ClickContext genericClick) {
@@ -303,6 +312,10 @@ public final class MenuManager implements Listener {
      */
     public void internallyOpen(@NotNull Player player, @NotNull Menu menu, boolean force, @Nullable Menu.UpdateContext ctx) {
         if (!new PlayerMenuOpenEvent(player, menu, force, ctx).callEvent()) return; // Call the event
+        if (menu.getClass().isAnnotationPresent(SharedCanvas.class)) {
+            this.openShared(player, menu, force, ctx);
+            return;
+        }
 
         InventoryView openInventory = player.getOpenInventory();
         Canvas canvas = menu.canvasMap().get(player.getUniqueId());
@@ -338,73 +351,410 @@ public final class MenuManager implements Listener {
             // update inventory
             Inventory topInventory = openInventory.getTopInventory();
 
-            // remove all populated buttons
-            canvas.buttons().removeIf(Button::populated);
-
-            canvas.basicPopulator().forEach(basicPopulator -> {
-                //noinspection ConstantValue
-                if (basicPopulator != null) {
-                    Canvas.BasicPopulator.Populator<?> populator = basicPopulator.populator();
-                    if (populator != null) {
-                        try {
-                            if (basicPopulator.pageBackwards() != null) {
-                                canvas.buttons().remove(basicPopulator.pageBackwards());
-                            }
-                            if (basicPopulator.pageForwards() != null) {
-                                canvas.buttons().remove(basicPopulator.pageForwards());
-                            }
-                            // repopulate
-                            basicPopulator.updateContent(player, populator);
-                        } catch (Throwable e) {
-                            //noinspection CallToPrintStackTrace
-                            e.printStackTrace();
-                            plugin.getLogger().warning(e.getMessage());
+            this.updateCanvas(player, menu, canvas);
+            // update inventory
+            this.updateInventory(player, topInventory, canvas);
+        }
+    }
+
+    /**
+     * Fills the populators again and calls the update event of the menu.
+     *
+     * @param player the player
+     * @param menu   the menu
+     * @param canvas the canvas
+     */
+    private void updateCanvas(@NotNull Player player, @NotNull Menu menu, @NotNull Canvas canvas) {
+        // remove all populated buttons
+        canvas.removeButtons(Button::populated);
+
+        canvas.basicPopulator().forEach(basicPopulator -> {
+            //noinspection ConstantValue
+            if (basicPopulator != null) {
+                Canvas.BasicPopulator.Populator<?> populator = basicPopulator.populator();
+                if (populator != null) {
+                    try {
+                        if (basicPopulator.pageBackwards() != null) {
+                            canvas.removeButton(basicPopulator.pageBackwards());
                         }
+                        if (basicPopulator.pageForwards() != null) {
+                            canvas.removeButton(basicPopulator.pageForwards());
+                        }
+                        // repopulate
+                        basicPopulator.updateContent(player, populator);
+                    } catch (Throwable e) {
+                        //noinspection CallToPrintStackTrace
+                        e.printStackTrace();
+                        plugin.getLogger().warning(e.getMessage());
                     }
                 }
-            });
-            try {
-                menu.update(canvas, player); // update event
-            } catch (Exception e) {
-                //noinspection CallToPrintStackTrace
-                e.printStackTrace();
-                plugin.getLogger().warning(e.getMessage());
             }
-            // update inventory
-            this.updateInventory(player, topInventory, canvas);
+        });
+        try {
+            menu.update(canvas, player); // update event
+        } catch (Exception e) {
+            //noinspection CallToPrintStackTrace
+            e.printStackTrace();
+            plugin.getLogger().warning(e.getMessage());
         }
     }
 
     /**
      * Updates the inventory.
+     * <p>
+     * The canvas is drawn into an off-screen inventory first.
+     * Only the slots that differ from the last drawn frame are set,
+     * so an update without changes sends nothing to the player.
+     * </p>
      *
      * @param player    the player
      * @param inventory the inventory
      * @param canvas    the canvas
      */
     private void updateInventory(@NotNull Player player, @NotNull Inventory inventory, @NotNull Canvas canvas) {
-        inventory.clear(); // clear inventory
+        Inventory shadow = canvas.shadowInventory(inventory.getSize());
+        List<MenuRefreshTask.Ticker> tickers = new ArrayList<>();
+        canvas.cancelPendingItems(); // items of the previous frame
+        this.draw(player, canvas, shadow, tickers);
+
+        ItemStack[] frame = shadow.getContents();
+        forEachChangedSlot(canvas.lastRendered(), frame, slot -> inventory.setItem(slot, frame[slot]));
+        canvas.lastRendered(frame);
+        this.scheduleRefresh(canvas, player, tickers);
+    }
 
+    /**
+     * Visits the slots whose item differs from the last frame.
+     *
+     * @param last   the frame as last sent, null if the inventory is new and empty
+     * @param frame  the new frame
+     * @param action called with each changed slot
+     * @param <T>    the item type
+     * @return the amount of changed slots
+     */
+    static <T> int forEachChangedSlot(@Nullable T @Nullable [] last, @Nullable T @NotNull [] frame, @NotNull IntConsumer action) {
+        if (last != null && last.length != frame.length) {
+            last = null; // another size is another inventory, which starts empty
+        }
+        int changed = 0;
+        for (int slot = 0; slot < frame.length; slot++) {
+            if (!Objects.equals(last == null ? null : last[slot], frame[slot])) {
+                action.accept(slot);
+                changed++;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Draws the decorations and the buttons of the canvas.
+     * Personalized buttons of a shared canvas are skipped, they are drawn for each viewer.
+     *
+     * @param player  the player
+     * @param canvas  the canvas
+     * @param shadow  the empty inventory to draw into
+     * @param tickers the list the ticking buttons are added to, null to ignore them
+     */
+    private void draw(@NotNull Player player, @NotNull Canvas canvas, @NotNull Inventory shadow, @Nullable List<MenuRefreshTask.Ticker> tickers) {
         // free items first aka (decorations)
         for (ItemDecorator decorator : canvas.decorators()) {
-            ItemDecoratorContext ctx = ItemDecoratorContext.of(canvas, inventory);
+            ItemDecoratorContext ctx = ItemDecoratorContext.of(canvas, shadow);
             decorator.handle(ctx); // handle the decoration
         }
+        ItemStack[] background = shadow.getContents();
+        int[] renderedBy = new int[background.length];
+        Arrays.fill(renderedBy, -1);
 
         // then buttons
-        for (Button button : canvas.buttons()) {
+        long menuInterval = this.refreshInterval(canvas.assosiatedMenu());
+        Map<Button, ItemStack> lastResolved = canvas.resolvedItems();
+        Map<Button, ItemStack> resolved = new IdentityHashMap<>(); // only buttons still on the canvas
+        List<Button> buttons = canvas.buttons();
+        for (int i = 0; i < buttons.size(); i++) {
+            Button button = buttons.get(i);
             Button.ItemFactory itemFactory = button.itemFactory();
-            if (itemFactory == null) {
+            if (itemFactory == null || (canvas.shared() && button.personalized())) {
                 continue;
             }
-            Item item = itemFactory.create(player);
-            if (item == null) {
+            long interval = button.refreshInterval() == Button.MENU_REFRESH_INTERVAL ? menuInterval : button.refreshInterval();
+            if (tickers != null && interval > 0) {
+                tickers.add(new MenuRefreshTask.Ticker(canvas, button, i, interval));
+            }
+            Button.AsyncItemFactory asyncItemFactory = button.asyncItemFactory();
+            ItemStack stack;
+            if (asyncItemFactory != null && !canvas.shared()) {
+                CompletableFuture<Item> future = asyncItemFactory.create(player);
+                if (future.isDone() && !future.isCompletedExceptionally() && !future.isCancelled()) {
+                    Item item = future.join(); // already done, no need for the placeholder
+                    stack = item == null ? null : item.get().clone();
+                    resolved.put(button, stack);
+                } else {
+                    this.awaitItem(canvas, player, button, i, renderedBy, future);
+                    if (lastResolved.containsKey(button)) {
+                        stack = lastResolved.get(button); // keep the last item instead of flashing the placeholder
+                        resolved.put(button, stack);
+                    } else {
+                        Item item = itemFactory.create(player);
+                        stack = item == null ? null : item.get();
+                    }
+                }
+            } else {
+                Item item = itemFactory.create(player);
+                stack = item == null ? null : item.get();
+            }
+            if (stack == null) {
                 continue;
             }
             DetectableArea matrix = button.detectableArea();
             Set<Integer> slots = matrix.slots();
-            slots.forEach(slot -> inventory.setItem(slot, item.get()));
+            for (int slot : slots) {
+                shadow.setItem(slot, stack);
+                if (slot >= 0 && slot < renderedBy.length) {
+                    renderedBy[slot] = i;
+                }
+            }
+        }
+        canvas.background(background);
+        canvas.renderedBy(renderedBy);
+        canvas.resolvedItems(resolved);
+    }
+
+    /**
+     * Opens a menu annotated with {@link SharedCanvas}.
+     * <p>
+     * The shared canvas is built or updated once per update cycle, see {@link Menu#updateCycle()}.
+     * With force, the viewers move to a newly built canvas,
+     * without force, the first viewer of the cycle updates the canvas and every viewer gets the changed slots.
+     * </p>
+     *
+     * @param player the player
+     * @param menu   the menu
+     * @param force  if the shared canvas should be built again
+     * @param ctx    the context of the update
+     */
+    private void openShared(@NotNull Player player, @NotNull Menu menu, boolean force, @Nullable Menu.UpdateContext ctx) {
+        UUID uniqueId = player.getUniqueId();
+        Inventory topInventory = player.getOpenInventory().getTopInventory();
+        Canvas current = menu.canvasMap().get(uniqueId);
+        Canvas shared = menu.sharedCanvas();
+        long cycle = menu.updateCycle();
+
+        if (shared == null || (force && shared.updateCycle() != cycle)) {
+            shared = this.buildShared(player, menu, ctx); // later viewers of the cycle move to it
+            shared.updateCycle(cycle);
+        } else if (current == shared && shared.updateCycle() != cycle) {
+            shared.menuUpdateContext(ctx); // set the context of the update
+            this.updateCanvas(player, menu, shared);
+            this.drawShared(player, shared);
+            shared.updateCycle(cycle);
+        }
+        if (current == shared && topInventory.getHolder() == shared) {
+            this.drawPersonalized(player, topInventory, shared, false);
+            return;
         }
+        menu.view(uniqueId, shared);
+
+        Inventory inventory = shared.craftInventory(); // every viewer has an own inventory
+        this.drawPersonalized(player, inventory, shared, true);
+        player.openInventory(inventory);
+    }
+
+    /**
+     * Builds the shared canvas of a menu.
+     *
+     * @param player the first viewer
+     * @param menu   the menu
+     * @param ctx    the context of the update
+     * @return the canvas
+     */
+    private @NotNull Canvas buildShared(@NotNull Player player, @NotNull Menu menu, @Nullable Menu.UpdateContext ctx) {
+        Canvas shared = new Canvas(6, menu);
+        shared.shared(true);
+        shared.menuUpdateContext(ctx); // set the context of the update
+        shared.assosiatedMenu(menu);
+        try {
+            menu.open(shared, player); // fill the canvas, once for everyone
+        } catch (Exception e) {
+            //noinspection CallToPrintStackTrace
+            e.printStackTrace();
+            plugin.getLogger().warning(e.getMessage());
+        }
+        shared.assosiatedInventory(shared.craftInventory()); // template of the viewer inventories
+        this.drawShared(player, shared);
+        menu.sharedCanvas(shared);
+        return shared;
+    }
+
+    /**
+     * Draws the items of a shared canvas that are the same for all viewers.
+     *
+     * @param player the viewer the canvas is drawn for
+     * @param canvas the shared canvas
+     */
+    private void drawShared(@NotNull Player player, @NotNull Canvas canvas) {
+        Inventory template = Objects.requireNonNull(canvas.assosiatedInventory());
+        Inventory shadow = canvas.shadowInventory(template.getSize());
+        this.draw(player, canvas, shadow, null);
+        canvas.lastRendered(shadow.getContents());
+    }
+
+    /**
+     * Draws the shared items and the personalized buttons of a shared canvas for one viewer.
+     *
+     * @param player    the viewer
+     * @param inventory the inventory of the viewer
+     * @param canvas    the shared canvas
+     * @param fresh     true if the inventory is still empty
+     */
+    private void drawPersonalized(@NotNull Player player, @NotNull Inventory inventory, @NotNull Canvas canvas, boolean fresh) {
+        ItemStack[] view = Objects.requireNonNull(canvas.lastRendered()).clone();
+        int[] renderedBy = Objects.requireNonNull(canvas.renderedBy());
+        List<Button> buttons = canvas.buttons();
+        for (int i = 0; i < buttons.size(); i++) {
+            Button button = buttons.get(i);
+            Button.ItemFactory itemFactory = button.itemFactory();
+            if (itemFactory == null || !button.personalized()) {
+                continue;
+            }
+            Item item = itemFactory.create(player);
+            if (item != null) {
+                overlay(view, renderedBy, i, button.toSlots(), item.get());
+            }
+        }
+        if (fresh) {
+            inventory.setContents(view);
+            return;
+        }
+        // the shared items may have changed as well
+        forEachChangedSlot(inventory.getContents(), view, slot -> inventory.setItem(slot, view[slot]));
+    }
+
+    /**
+     * Draws the item of a personalized button over the shared items of a viewer.
+     * Slots of later shared buttons are left alone, they are drawn on top.
+     *
+     * @param view       the items of the viewer
+     * @param renderedBy the index of the shared button drawn on top of each slot, -1 for none
+     * @param index      the index of the personalized button
+     * @param slots      the slots of the button
+     * @param item       the item
+     * @param <T>        the item type
+     */
+    static <T> void overlay(@Nullable T @NotNull [] view, int @NotNull [] renderedBy, int index, @NotNull Set<Integer> slots, @NotNull T item) {
+        for (int slot : slots) {
+            if (slot < 0 || slot >= view.length || renderedBy[slot] > index) {
+                continue; // a later shared button is drawn on top
+            }
+            view[slot] = item;
+        }
+    }
+
+    /**
+     * Patches the item of a button once its async factory is done.
+     * The result is dropped if the canvas was closed or drawn again in the meantime.
+     *
+     * @param canvas the canvas
+     * @param player the player
+     * @param button the button
+     * @param index  the index of the button in the canvas
+     * @param frame  the drawing order of the frame the item belongs to
+     * @param future the future of the item
+     */
+    private void awaitItem(@NotNull Canvas canvas, @NotNull Player player, @NotNull Button button, int index, int @NotNull [] frame, @NotNull CompletableFuture<Item> future) {
+        Button.AsyncItemFactory asyncItemFactory = Objects.requireNonNull(button.asyncItemFactory());
+        // cancelling stops the work of the factory, a future shared by several viewers is left alone and only its copy is cancelled
+        CompletableFuture<Item> result = asyncItemFactory.cancellable() ? future : future.copy();
+        canvas.pendingItems().add(result);
+        result.whenComplete((item, error) -> {
+            if (error != null) {
+                if (!(error instanceof CancellationException)) {
+                    this.plugin.getLogger().warning("Could not create item: " + error.getMessage());
+                }
+                return;
+            }
+            if (!this.plugin.isEnabled()) {
+                return;
+            }
+            Bukkit.getScheduler().runTask(this.plugin, () -> {
+                canvas.pendingItems().remove(result);
+                if (canvas.renderedBy() != frame || player.getOpenInventory().getTopInventory() != canvas.assosiatedInventory()) {
+                    return; // closed or drawn again
+                }
+                canvas.patch(index, button, item == null ? null : item.get());
+            });
+        });
+    }
+
+    /**
+     * Creates the item of a ticking button again and sets it in the inventory.
+     *
+     * @param canvas the canvas
+     * @param player the player
+     * @param button the button
+     * @param index  the index of the button in the canvas
+     * @return false if the canvas is gone
+     */
+    boolean refreshButton(@NotNull Canvas canvas, @NotNull Player player, @NotNull Button button, int index) {
+        Inventory inventory = canvas.assosiatedInventory();
+        int[] frame = canvas.renderedBy();
+        Button.ItemFactory itemFactory = button.itemFactory();
+        if (inventory == null || frame == null || itemFactory == null) {
+            return false;
+        }
+        if (player.getOpenInventory().getTopInventory() != inventory) {
+            return true; // another menu is on top, refreshed again once rendered
+        }
+        Button.AsyncItemFactory asyncItemFactory = button.asyncItemFactory();
+        if (asyncItemFactory == null) {
+            Item item = itemFactory.create(player);
+            return canvas.patch(index, button, item == null ? null : item.get());
+        }
+        CompletableFuture<Item> future = asyncItemFactory.create(player);
+        if (future.isDone() && !future.isCompletedExceptionally() && !future.isCancelled()) {
+            Item item = future.join();
+            return canvas.patch(index, button, item == null ? null : item.get());
+        }
+        this.awaitItem(canvas, player, button, index, frame, future); // the current item stays until then
+        return true;
+    }
+
+    private long refreshInterval(@NotNull Menu menu) {
+        LiveMenu liveMenu = menu.getClass().getAnnotation(LiveMenu.class);
+        return liveMenu != null ? liveMenu.interval() : Button.DEFAULT_REFRESH_INTERVAL;
+    }
+
+    private void scheduleRefresh(@NotNull Canvas canvas, @NotNull Player player, @NotNull List<MenuRefreshTask.Ticker> tickers) {
+        if (tickers.isEmpty()) {
+            canvas.cancelTickers();
+            return;
+        }
+        this.refreshTask.schedule(canvas, player, tickers);
+        if (this.refreshTaskHandle == null) { // started by the first ticking button
+            this.refreshTaskHandle = Bukkit.getScheduler().runTaskTimer(this.plugin, this.refreshTask, 1L, 1L);
+        }
+    }
+
+    /**
+     * Stops the refresh task once no ticking button is left, it is started again by the next one.
+     */
+    private void stopRefreshTask() {
+        if (this.refreshTaskHandle != null) {
+            this.refreshTaskHandle.cancel();
+            this.refreshTaskHandle = null;
+        }
+    }
+
+    /**
+     * Sets the time the refreshes of ticking buttons may take per tick.
+     * Refreshes that do not fit are done on the next tick.
+     *
+     * @param micros the budget in microseconds, 0 for no limit
+     * @return the manager
+     * @see Button#ticking()
+     */
+    public @NotNull MenuManager refreshBudget(long micros) {
+        this.refreshTask.tickBudget(micros);
+        return this;
     }
 
     /**
@@ -432,6 +782,8 @@ public final class MenuManager implements Listener {
      * Shutdown the manager.
      */
     public void clearMenus() {
+        this.stopRefreshTask();
+        this.refreshTask.clear();
         this.menus.clear();
         HandlerList.unregisterAll(this);
     }
@@ -0,0 +1,174 @@
+package com.marcusslover.plus.lib.item;
+
+import org.bukkit.entity.Player;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Task that runs every tick and refreshes the ticking buttons of open menus.
+ * <p>
+ * Only the item factory of a due button is called again and only its slots are set.
+ * Refreshes stop once the time budget of the tick is used up,
+ * the remaining ones are done first on the next tick.
+ * Once no ticker is left, the task reports that it is idle so it can be stopped until the next one is scheduled.
+ * </p>
+ */
+final class MenuRefreshTask implements Runnable {
+    private final @NotNull Refresher refresher;
+    private final @NotNull Runnable onIdle;
+    private final @NotNull Logger logger;
+    private final @NotNull PriorityQueue<Ticker> queue = new PriorityQueue<>(Comparator.comparingLong(Ticker::nextTick));
+    private long tickBudget = TimeUnit.MICROSECONDS.toNanos(500);
+    private long tick = 0;
+
+    /**
+     * Creates the task.
+     *
+     * @param refresher refreshes a single button
+     * @param onIdle    called by {@link #run()} once no ticker is left
+     * @param logger    logger of failed refreshes
+     */
+    MenuRefreshTask(@NotNull Refresher refresher, @NotNull Runnable onIdle, @NotNull Logger logger) {
+        this.refresher = refresher;
+        this.onIdle = onIdle;
+        this.logger = logger;
+    }
+
+    /**
+     * Sets the time refreshes may take per tick.
+     *
+     * @param micros The budget in microseconds, 0 for no limit.
+     */
+    void tickBudget(long micros) {
+        this.tickBudget = TimeUnit.MICROSECONDS.toNanos(micros);
+    }
+
+    /**
+     * Schedules the ticking buttons of a freshly rendered canvas.
+     * Tickers of the previous render are dropped.
+     *
+     * @param canvas  The canvas.
+     * @param player  The viewer.
+     * @param tickers The ticking buttons, by their index in the canvas.
+     */
+    void schedule(@NotNull Canvas canvas, @NotNull Player player, @NotNull List<Ticker> tickers) {
+        canvas.cancelTickers();
+        for (Ticker ticker : tickers) {
+            ticker.task = this;
+            ticker.player = player;
+            ticker.nextTick = this.tick + ticker.interval;
+            this.queue.add(ticker);
+        }
+        canvas.tickers(tickers);
+    }
+
+    /**
+     * Gets the amount of scheduled tickers.
+     *
+     * @return The amount of tickers.
+     */
+    int scheduled() {
+        return this.queue.size();
+    }
+
+    @Override
+    public void run() {
+        long now = System.nanoTime();
+        long deadline = this.tickBudget > 0 ? now + this.tickBudget : Long.MAX_VALUE;
+        this.tick++;
+        Ticker ticker;
+        while ((ticker = this.queue.peek()) != null && ticker.nextTick <= this.tick) {
+            this.queue.poll();
+            try {
+                this.refresh(ticker);
+            } catch (Throwable e) {
+                this.logger.warning(e.getMessage());
+            }
+            if (!ticker.cancelled) { // the refresh may have closed or rendered the canvas again
+                ticker.nextTick = this.tick + ticker.interval; // a late refresh does not cause a burst
+                this.queue.add(ticker);
+            }
+            if (System.nanoTime() - deadline >= 0) {
+                break; // continue next tick
+            }
+        }
+        if (this.queue.isEmpty()) {
+            this.onIdle.run();
+        }
+    }
+
+    /**
+     * Drops all tickers.
+     */
+    void clear() {
+        this.queue.forEach(ticker -> ticker.cancelled = true);
+        this.queue.clear();
+    }
+
+    private void refresh(@NotNull Ticker ticker) {
+        if (!this.refresher.refresh(ticker.canvas, ticker.player, ticker.button, ticker.index)) {
+            ticker.cancelled = true; // the canvas is gone
+        }
+    }
+
+    /**
+     * Creates the item of a ticking button again and sets it in the inventory.
+     */
+    @FunctionalInterface
+    interface Refresher {
+        /**
+         * Refreshes the button.
+         *
+         * @param canvas the canvas
+         * @param player the viewer
+         * @param button the button
+         * @param index  the index of the button in the canvas
+         * @return false if the canvas is gone
+         */
+        boolean refresh(@NotNull Canvas canvas, @NotNull Player player, @NotNull Button button, int index);
+    }
+
+    /**
+     * Refresh schedule of one ticking button of a canvas.
+     */
+    static final class Ticker {
+        private final @NotNull Canvas canvas;
+        private final @NotNull Button button;
+        private final int index; // position in the canvas, later buttons are drawn on top
+        private final long interval;
+        private @Nullable MenuRefreshTask task = null;
+        private Player player = null; // set once scheduled
+        private long nextTick = 0;
+        private boolean cancelled = false;
+
+        Ticker(@NotNull Canvas canvas, @NotNull Button button, int index, long interval) {
+            this.canvas = canvas;
+            this.button = button;
+            this.index = index;
+            this.interval = interval;
+        }
+
+        private long nextTick() {
+            return this.nextTick;
+        }
+
+        /**
+         * Stops the refreshes and removes the ticker from the queue right away.
+         */
+        void cancel() {
+            if (this.cancelled) {
+                return;
+            }
+            this.cancelled = true;
+            if (this.task != null) {
+                this.task.queue.remove(this);
+            }
+        }
+    }
+}
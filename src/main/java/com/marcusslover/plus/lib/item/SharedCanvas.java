@@ -0,0 +1,24 @@
+package com.marcusslover.plus.lib.item;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Renders the menu once for all viewers, meant for menus where everyone sees the same, like a server selector.
+ * <p>
+ * {@link Menu#open(Canvas, org.bukkit.entity.Player)} is called for the first viewer only, the canvas and its items are shared.
+ * Every viewer still gets an own inventory, only the items of personalized buttons,
+ * see {@link Button#personalized()}, are created for each viewer.
+ * An update without force calls {@link Menu#update(Canvas, org.bukkit.entity.Player)} and the item factories
+ * once for the first viewer of the update, every viewer then gets the changed items.
+ * An update with force builds the canvas again, once for all viewers of the update.
+ * Updating a single viewer changes the shared canvas too, the other viewers see it on their next update.
+ * Populators and ticking buttons are not per viewer and should not be used.
+ * </p>
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface SharedCanvas {
+}
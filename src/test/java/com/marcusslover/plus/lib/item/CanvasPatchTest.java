@@ -0,0 +1,60 @@
+package com.marcusslover.plus.lib.item;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CanvasPatchTest {
+    private final List<Integer> sent = new ArrayList<>();
+
+    @Test
+    public void itemIsSetInItsSlots() {
+        String[] last = {"bg", null, null};
+        int[] renderedBy = {-1, -1, -1};
+        String[] background = {"bg", null, null};
+        assertEquals(2, Canvas.patch(1, Set.of(0, 1), "x", last, renderedBy, background, this.sent::add));
+        assertArrayEquals(new String[]{"x", "x", null}, last);
+        assertArrayEquals(new int[]{1, 1, -1}, renderedBy);
+        assertEquals(Set.of(0, 1), Set.copyOf(this.sent));
+    }
+
+    @Test
+    public void laterButtonsStayOnTop() {
+        String[] last = {"later", "earlier"};
+        int[] renderedBy = {2, 0};
+        Canvas.patch(1, Set.of(0, 1), "x", last, renderedBy, new String[2], this.sent::add);
+        assertArrayEquals(new String[]{"later", "x"}, last);
+        assertArrayEquals(new int[]{2, 1}, renderedBy);
+        assertEquals(List.of(1), this.sent);
+    }
+
+    @Test
+    public void missingItemShowsTheBackground() {
+        String[] last = {"x", "earlier"};
+        int[] renderedBy = {1, 0};
+        String[] background = {"bg", "bg"};
+        Canvas.patch(1, Set.of(0, 1), null, last, renderedBy, background, this.sent::add);
+        assertArrayEquals(new String[]{"bg", "earlier"}, last); // slot 1 was never drawn by the button
+        assertArrayEquals(new int[]{-1, 0}, renderedBy);
+        assertEquals(List.of(0), this.sent);
+    }
+
+    @Test
+    public void unchangedItemIsNotSent() {
+        String[] last = {"x"};
+        int[] renderedBy = {1};
+        assertEquals(0, Canvas.patch(1, Set.of(0), new String("x"), last, renderedBy, new String[1], this.sent::add));
+        assertTrue(this.sent.isEmpty());
+    }
+
+    @Test
+    public void slotsOutsideTheInventoryAreIgnored() {
+        String[] last = new String[9];
+        int[] renderedBy = new int[9];
+        assertEquals(0, Canvas.patch(0, Set.of(-1, 9, 54), "x", last, renderedBy, new String[9], this.sent::add));
+    }
+}
@@ -0,0 +1,111 @@
+package com.marcusslover.plus.lib.item;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import tests.MenuTest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MenuRefreshTaskTest {
+    private final List<Button> refreshed = new ArrayList<>();
+    private final AtomicInteger idle = new AtomicInteger();
+    private Canvas canvas;
+    private MenuRefreshTask task;
+    private long refreshNanos = 0;
+    private boolean canvasGone = false;
+
+    @BeforeEach
+    public void setup() {
+        this.canvas = new Canvas(6, new MenuTest());
+        this.task = new MenuRefreshTask((canvas, player, button, index) -> {
+            this.refreshed.add(button);
+            long end = System.nanoTime() + this.refreshNanos;
+            while (System.nanoTime() < end) {
+                Thread.onSpinWait(); // a slow item factory
+            }
+            return !this.canvasGone;
+        }, this.idle::incrementAndGet, Logger.getLogger("MenuRefreshTaskTest"));
+    }
+
+    @Test
+    public void refreshesDueButtons() {
+        Button fast = Button.create(0);
+        Button slow = Button.create(1);
+        this.schedule(new MenuRefreshTask.Ticker(this.canvas, fast, 0, 1), new MenuRefreshTask.Ticker(this.canvas, slow, 1, 3));
+
+        for (int i = 0; i < 3; i++) {
+            this.task.run();
+        }
+        assertEquals(3, this.refreshed.stream().filter(button -> button == fast).count());
+        assertEquals(1, this.refreshed.stream().filter(button -> button == slow).count());
+        assertEquals(0, this.idle.get());
+    }
+
+    @Test
+    public void budgetDefersRefreshes() {
+        this.task.tickBudget(1);
+        this.refreshNanos = TimeUnit.MILLISECONDS.toNanos(1);
+        Button first = Button.create(0);
+        Button second = Button.create(1);
+        this.schedule(new MenuRefreshTask.Ticker(this.canvas, first, 0, 10), new MenuRefreshTask.Ticker(this.canvas, second, 1, 10));
+
+        for (int i = 0; i < 10; i++) {
+            this.task.run();
+        }
+        assertEquals(1, this.refreshed.size()); // the budget allows only one refresh per tick
+        this.task.run();
+        assertEquals(2, this.refreshed.size()); // the deferred one is first on the next tick
+        assertNotSame(this.refreshed.get(0), this.refreshed.get(1));
+    }
+
+    @Test
+    public void cancelledTickersLeaveTheQueue() {
+        this.schedule(new MenuRefreshTask.Ticker(this.canvas, Button.create(0), 0, 100));
+        assertEquals(1, this.task.scheduled());
+
+        this.canvas.cancelTickers(); // closed long before the ticker is due
+        assertEquals(0, this.task.scheduled());
+        this.task.run();
+        assertEquals(1, this.idle.get());
+        assertTrue(this.refreshed.isEmpty());
+    }
+
+    @Test
+    public void renderingAgainReplacesTickers() {
+        this.schedule(new MenuRefreshTask.Ticker(this.canvas, Button.create(0), 0, 100));
+        this.schedule(new MenuRefreshTask.Ticker(this.canvas, Button.create(0), 0, 100));
+        assertEquals(1, this.task.scheduled());
+    }
+
+    @Test
+    public void stopsOnceTheCanvasIsGone() {
+        this.schedule(new MenuRefreshTask.Ticker(this.canvas, Button.create(0), 0, 1));
+        this.task.run();
+        assertEquals(0, this.idle.get());
+
+        this.canvasGone = true;
+        this.task.run();
+        assertEquals(0, this.task.scheduled());
+        assertEquals(1, this.idle.get());
+    }
+
+    @Test
+    public void failedRefreshKeepsTicking() {
+        this.task = new MenuRefreshTask((canvas, player, button, index) -> {
+            throw new IllegalStateException("broken item factory");
+        }, this.idle::incrementAndGet, Logger.getLogger("MenuRefreshTaskTest"));
+        this.schedule(new MenuRefreshTask.Ticker(this.canvas, Button.create(0), 0, 1));
+        this.task.run();
+        assertEquals(1, this.task.scheduled());
+    }
+
+    private void schedule(MenuRefreshTask.Ticker... tickers) {
+        this.task.schedule(this.canvas, null, List.of(tickers)); // no viewer needed without a manager
+    }
+}
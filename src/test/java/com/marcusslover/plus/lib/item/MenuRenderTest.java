@@ -0,0 +1,43 @@
+package com.marcusslover.plus.lib.item;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MenuRenderTest {
+    @Test
+    public void newInventorySendsOnlyItems() {
+        List<Integer> sent = new ArrayList<>();
+        String[] frame = {"a", null, "b", null};
+        assertEquals(2, MenuManager.forEachChangedSlot(null, frame, sent::add));
+        assertEquals(List.of(0, 2), sent);
+    }
+
+    @Test
+    public void unchangedFrameSendsNothing() {
+        String[] last = {"a", null, "b"};
+        String[] frame = {new String("a"), null, "b"}; // equal, not the same
+        assertEquals(0, MenuManager.forEachChangedSlot(last, frame, slot -> fail("slot " + slot)));
+    }
+
+    @Test
+    public void changedAndClearedSlotsAreSent() {
+        List<Integer> sent = new ArrayList<>();
+        String[] last = {"a", "b", null, "d"};
+        String[] frame = {"a", null, "c", "e"};
+        assertEquals(3, MenuManager.forEachChangedSlot(last, frame, sent::add));
+        assertEquals(List.of(1, 2, 3), sent);
+    }
+
+    @Test
+    public void resizedInventoryStartsEmpty() {
+        List<Integer> sent = new ArrayList<>();
+        String[] last = {"a", "b"};
+        String[] frame = {"a", null, "c"};
+        MenuManager.forEachChangedSlot(last, frame, sent::add);
+        assertEquals(List.of(0, 2), sent); // slot 0 is not in the new inventory yet
+    }
+}
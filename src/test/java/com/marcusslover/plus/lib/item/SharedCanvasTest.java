@@ -0,0 +1,94 @@
+package com.marcusslover.plus.lib.item;
+
+import org.junit.jupiter.api.Test;
+import tests.MenuTest;
+
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SharedCanvasTest {
+    private final Menu menu = new MenuTest();
+    private final UUID alice = UUID.randomUUID();
+    private final UUID bob = UUID.randomUUID();
+
+    @Test
+    public void viewersAreCounted() {
+        Canvas shared = this.shared();
+        this.menu.view(this.alice, shared);
+        this.menu.view(this.bob, shared);
+        this.menu.view(this.alice, shared); // updated, not joined again
+        assertEquals(2, shared.viewers());
+
+        this.menu.leave(this.alice);
+        assertEquals(1, shared.viewers());
+        assertSame(shared, this.menu.sharedCanvas()); // still in use
+
+        this.menu.leave(this.bob);
+        assertEquals(0, shared.viewers());
+        assertNull(this.menu.sharedCanvas());
+        assertNull(this.menu.leave(this.bob));
+    }
+
+    @Test
+    public void viewersMoveToARebuiltCanvas() {
+        Canvas old = this.shared();
+        this.menu.view(this.alice, old);
+        this.menu.view(this.bob, old);
+
+        Canvas rebuilt = this.shared();
+        this.menu.view(this.alice, rebuilt);
+        assertEquals(1, old.viewers());
+        assertEquals(1, rebuilt.viewers());
+
+        this.menu.view(this.bob, rebuilt);
+        assertEquals(0, old.viewers());
+        assertEquals(2, rebuilt.viewers());
+        assertSame(rebuilt, this.menu.sharedCanvas());
+    }
+
+    @Test
+    public void closeEventsOfAnOldCanvasAreStale() {
+        Canvas old = this.shared();
+        this.menu.view(this.alice, old);
+        assertTrue(this.menu.viewing(this.alice, old));
+
+        Canvas rebuilt = this.shared();
+        this.menu.view(this.alice, rebuilt); // the old inventory is closed after the new one is set
+        assertFalse(this.menu.viewing(this.alice, old));
+        assertTrue(this.menu.viewing(this.alice, rebuilt));
+
+        Canvas own = new Canvas(6, this.menu);
+        assertTrue(this.menu.viewing(this.bob, own)); // only shared canvases are checked
+    }
+
+    @Test
+    public void updateCycleIsNewPerSend() {
+        long first = this.menu.updateCycle();
+        assertNotEquals(first, this.menu.updateCycle());
+    }
+
+    @Test
+    public void personalizedItemsAreDrawnOverTheSharedOnes() {
+        String[] view = {"a", "b", null, "d"};
+        int[] renderedBy = {0, -1, -1, 3};
+        MenuManager.overlay(view, renderedBy, 1, Set.of(0, 1, 2), "p");
+        assertArrayEquals(new String[]{"p", "p", "p", "d"}, view);
+    }
+
+    @Test
+    public void laterSharedButtonsStayOnTop() {
+        String[] view = {"a", "b", "c"};
+        int[] renderedBy = {2, -1, 0};
+        MenuManager.overlay(view, renderedBy, 1, Set.of(-1, 0, 1, 2, 9), "p");
+        assertArrayEquals(new String[]{"a", "p", "p"}, view);
+    }
+
+    private Canvas shared() {
+        Canvas canvas = new Canvas(6, this.menu);
+        canvas.shared(true);
+        this.menu.sharedCanvas(canvas);
+        return canvas;
+    }
+}
@@ -1,9 +1,16 @@
 package tests;
 
 import com.marcusslover.plus.lib.item.Button;
+import com.marcusslover.plus.lib.item.Canvas;
+import com.marcusslover.plus.lib.item.Item;
 import org.junit.jupiter.api.Test;
 
-import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
 
 public class ButtonTest {
     @Test
@@ -45,4 +52,55 @@ public class ButtonTest {
         }
     }
 
+    @Test
+    public void buttonAtFirstMatch() {
+        Canvas canvas = new Canvas(6, new MenuTest());
+        Button area = Button.create(0, 17, true);
+        Button overlapping = Button.create(10);
+        Button single = Button.create(20);
+        canvas.button(area).button(overlapping).button(single);
+
+        assertSame(area, canvas.buttonAt(10)); // the first button wins
+        assertSame(single, canvas.buttonAt(20));
+        assertNull(canvas.buttonAt(18));
+    }
+
+    @Test
+    public void buttonAtFollowsChanges() {
+        Canvas canvas = new Canvas(6, new MenuTest());
+        Button area = Button.create(0, 17, true);
+        canvas.button(area);
+        assertSame(area, canvas.buttonAt(10));
+
+        Button late = Button.create(10);
+        Button free = Button.create(20);
+        canvas.button(late).button(free); // added after the first lookup
+        assertSame(area, canvas.buttonAt(10));
+        assertSame(free, canvas.buttonAt(20));
+
+        area.slot(30); // moved away
+        assertSame(late, canvas.buttonAt(10));
+        assertSame(area, canvas.buttonAt(30));
+
+        canvas.clear();
+        assertNull(canvas.buttonAt(10));
+    }
+
+    @Test
+    public void offThreadSkipsCancelledItems() {
+        List<Runnable> queued = new ArrayList<>();
+        AtomicInteger created = new AtomicInteger();
+        Button.AsyncItemFactory factory = Button.AsyncItemFactory.offThread(player -> {
+            created.incrementAndGet();
+            return null;
+        }, queued::add);
+        assertTrue(factory.cancellable());
+
+        CompletableFuture<Item> cancelled = factory.create(null);
+        CompletableFuture<Item> needed = factory.create(null);
+        cancelled.cancel(false); // the menu was closed
+        queued.forEach(Runnable::run);
+        assertEquals(1, created.get());
+        assertTrue(needed.isDone());
+    }
 }
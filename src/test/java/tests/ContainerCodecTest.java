@@ -0,0 +1,119 @@
+package tests;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonObject;
+import com.marcusslover.plus.lib.container.codec.BinaryCodec;
+import com.marcusslover.plus.lib.container.codec.CompressedCodec;
+import com.marcusslover.plus.lib.container.codec.ContainerCodec;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ContainerCodecTest {
+    private final Gson gson = new GsonBuilder().setPrettyPrinting().serializeNulls().create();
+
+    @Test
+    public void binaryRoundTrip() {
+        Stats stats = Stats.sample();
+        byte[] data = ContainerCodec.BINARY.encode(this.gson, stats);
+
+        assertTrue(BinaryCodec.isBinary(data));
+        assertSame(ContainerCodec.BINARY, ContainerCodec.detect(data));
+        assertEquals(stats, ContainerCodec.detect(data).decode(this.gson, data, Stats.class));
+    }
+
+    @Test
+    public void binaryIsSmallerThanJson() {
+        Stats stats = Stats.sample();
+        assertTrue(ContainerCodec.BINARY.encode(this.gson, stats).length < ContainerCodec.JSON.encode(this.gson, stats).length);
+    }
+
+    @Test
+    public void readsFirstBinaryFormat() {
+        Stats stats = Stats.sample();
+        byte[] data = ContainerCodec.BINARY.encode(this.gson, stats);
+        byte[] old = new byte[data.length + 1]; // format 1 stored a schema version after the format
+        System.arraycopy(data, 0, old, 0, 3);
+        old[3] = 1;
+        old[4] = 0;
+        System.arraycopy(data, 4, old, 5, data.length - 4);
+
+        assertTrue(BinaryCodec.isBinary(old));
+        assertEquals(stats, ContainerCodec.detect(old).decode(this.gson, old, Stats.class));
+    }
+
+    @Test
+    public void minifiedJson() {
+        Stats stats = Stats.sample();
+        byte[] data = ContainerCodec.MINIFIED_JSON.encode(this.gson, stats);
+
+        assertFalse(new String(data, StandardCharsets.UTF_8).contains("\n"));
+        assertSame(ContainerCodec.JSON, ContainerCodec.detect(data));
+        assertEquals(stats, ContainerCodec.detect(data).decode(this.gson, data, Stats.class));
+    }
+
+    @Test
+    public void prettyJsonMatchesGson() {
+        for (int i = 0; i < 3; i++) { // the buffers of the thread are reused
+            Stats stats = Stats.sample();
+            byte[] data = ContainerCodec.JSON.encode(this.gson, stats);
+            assertEquals(this.gson.toJson(stats), new String(data, StandardCharsets.UTF_8));
+            assertEquals(stats, ContainerCodec.JSON.decode(this.gson, data, Stats.class));
+        }
+    }
+
+    @Test
+    public void readFields() {
+        for (ContainerCodec codec : List.of(ContainerCodec.JSON, ContainerCodec.MINIFIED_JSON, ContainerCodec.BINARY)) {
+            byte[] data = codec.encode(this.gson, Stats.sample());
+            JsonObject fields = ContainerCodec.detect(data).readFields(data, Set.of("kills", "ratio", "missing"));
+
+            assertEquals(2, fields.size());
+            assertEquals(-42, fields.get("kills").getAsInt());
+            assertEquals(0.1, fields.get("ratio").getAsDouble());
+        }
+    }
+
+    @Test
+    public void gzipRoundTrip() {
+        Stats stats = Stats.sample();
+        byte[] data = ContainerCodec.GZIP_JSON.encode(this.gson, stats);
+
+        assertTrue(CompressedCodec.isCompressed(data));
+        assertEquals(stats, ContainerCodec.detect(data).decode(this.gson, data, Stats.class));
+        assertEquals(-42, ContainerCodec.detect(data).readFields(data, Set.of("kills")).get("kills").getAsInt());
+    }
+
+    @Test
+    public void dictionaryRoundTrip() {
+        List<byte[]> samples = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            Stats stats = new Stats("Player" + i, i, i * 1000L, i / 7.0, 0.2f, false, null, List.of(i), Map.of("gold", i));
+            samples.add(ContainerCodec.MINIFIED_JSON.encode(this.gson, stats));
+        }
+        byte[] dictionary = CompressedCodec.trainDictionary(samples, 4096);
+        assertTrue(dictionary.length > 0);
+
+        ContainerCodec codec = CompressedCodec.withDictionary(ContainerCodec.MINIFIED_JSON, dictionary);
+        Stats stats = Stats.sample();
+        byte[] data = codec.encode(this.gson, stats);
+
+        assertTrue(CompressedCodec.isCompressed(data));
+        assertEquals(stats, ContainerCodec.detect(data).decode(this.gson, data, Stats.class));
+        assertTrue(data.length < ContainerCodec.GZIP_JSON.encode(this.gson, stats).length);
+    }
+
+    public record Stats(String name, int kills, long playtime, double ratio, float speed, boolean banned,
+                        String nothing, List<Integer> history, Map<String, Integer> medals) {
+        static Stats sample() {
+            return new Stats("Marcus", -42, Long.MAX_VALUE, 0.1, 0.2f, true, null, List.of(1, 2, 300000), Map.of("gold", 3));
+        }
+    }
+}
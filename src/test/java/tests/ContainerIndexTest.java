@@ -0,0 +1,51 @@
+package tests;
+
+import com.marcusslover.plus.lib.container.index.HashIndex;
+import com.marcusslover.plus.lib.container.index.SortedIndex;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ContainerIndexTest {
+
+    @Test
+    public void hashIndexFollowsUpdates() {
+        HashIndex<String, Member, String> index = HashIndex.of(Member::guild);
+        index.put("a", new Member("red", 1));
+        index.put("b", new Member("red", 2));
+        index.put("c", new Member("blue", 3));
+        assertEquals(Set.of("a", "b"), index.get("red"));
+
+        index.put("b", new Member("blue", 2)); // changed guild
+        assertEquals(Set.of("a"), index.get("red"));
+        assertEquals(2, index.count("blue"));
+
+        index.remove("a");
+        assertTrue(index.get("red").isEmpty());
+        assertFalse(index.fields().contains("red"));
+    }
+
+    @Test
+    public void sortedIndexQueries() {
+        SortedIndex<String, Member, Integer> index = SortedIndex.of(Member::kills);
+        index.put("a", new Member("red", 5));
+        index.put("b", new Member("red", 10));
+        index.put("c", new Member("red", 1));
+        index.put("d", new Member("red", 5));
+
+        assertEquals(List.of("b", "a"), index.top(2));
+        assertEquals(List.of("c"), index.bottom(1));
+        assertEquals(List.of("a", "d", "b"), index.range(5, null));
+
+        index.put("c", new Member("red", 20));
+        assertEquals(List.of("c", "b"), index.top(2));
+        index.remove("c");
+        assertEquals(3, index.size());
+    }
+
+    private record Member(String guild, int kills) {
+    }
+}
@@ -0,0 +1,63 @@
+package tests;
+
+import com.marcusslover.plus.lib.container.storage.AtomicFiles;
+import com.marcusslover.plus.lib.container.storage.ContainerJournal;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ContainerJournalTest {
+    @TempDir
+    Path folder;
+
+    @Test
+    public void commitWritesFiles() throws IOException {
+        try (ContainerJournal journal = new ContainerJournal(this.folder, Long.MAX_VALUE)) {
+            journal.commit(List.of(record("a.json", "1"), record("b.json", "2")));
+        }
+        assertEquals("1", Files.readString(this.folder.resolve("a.json")));
+        assertEquals("2", Files.readString(this.folder.resolve("b.json")));
+        assertFalse(Files.exists(this.folder.resolve(ContainerJournal.FILE_NAME)));
+    }
+
+    @Test
+    public void replayRestoresLatestRecords() throws IOException {
+        ContainerJournal journal = new ContainerJournal(this.folder, Long.MAX_VALUE);
+        journal.commit(List.of(record("a.json", "1"), record("b.json", "2")));
+        journal.commit(List.of(record("a.json", "3"), new ContainerJournal.Record("b.json", null)));
+
+        // simulate a crash: files are lost, the journal stays
+        Files.delete(this.folder.resolve("a.json"));
+        Files.write(this.folder.resolve(ContainerJournal.FILE_NAME), new byte[]{0, 0, 0, 5, 1}, StandardOpenOption.APPEND); // torn tail
+
+        assertEquals(2, ContainerJournal.replay(this.folder));
+        assertEquals("3", Files.readString(this.folder.resolve("a.json")));
+        assertFalse(Files.exists(this.folder.resolve("b.json")));
+        assertFalse(Files.exists(this.folder.resolve(ContainerJournal.FILE_NAME)));
+    }
+
+    @Test
+    public void checkpointCoversShardDirectories() throws IOException {
+        try (ContainerJournal journal = new ContainerJournal(this.folder, name -> this.folder.resolve(name.substring(0, 1)).resolve(name), Long.MAX_VALUE)) {
+            journal.commit(List.of(record("a.json", "1"), record("b.json", "2")));
+            journal.commit(List.of(new ContainerJournal.Record("b.json", null)));
+            journal.checkpoint();
+            assertEquals(0, Files.size(this.folder.resolve(ContainerJournal.FILE_NAME)));
+        }
+        assertEquals("1", Files.readString(this.folder.resolve("a").resolve("a.json")));
+        assertFalse(Files.exists(this.folder.resolve("b").resolve("b.json")));
+        AtomicFiles.syncDirectory(this.folder.resolve("missing")); // nothing to sync
+    }
+
+    private static ContainerJournal.Record record(String name, String data) {
+        return new ContainerJournal.Record(name, data.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,56 @@
+package tests;
+
+import com.marcusslover.plus.lib.container.storage.ContainerStorage;
+import com.marcusslover.plus.lib.container.storage.InMemoryStorage;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class InMemoryStorageTest {
+    private final InMemoryStorage storage = new InMemoryStorage();
+
+    @Test
+    public void batchedReadsAndDeletes() throws IOException {
+        this.storage.write(Map.of("a.json", bytes("1"), "b.json", bytes("2"), "c.json", bytes("3")));
+        Map<String, byte[]> read = this.storage.readAll(List.of("a.json", "b.json", "missing.json"));
+        assertEquals(2, read.size());
+        assertEquals("2", string(read.get("b.json")));
+
+        this.storage.delete(List.of("a.json", "b.json"));
+        assertFalse(this.storage.exists("a.json"));
+        assertEquals(1, this.storage.size());
+    }
+
+    @Test
+    public void conflictingWriteIsRejected() throws IOException {
+        assertTrue(this.storage.compareAndWrite(Map.of("a.json", bytes("1")), Map.of("a.json", ContainerStorage.NO_VERSION)));
+        ContainerStorage.Versioned first = this.storage.readVersioned("a.json");
+        ContainerStorage.Versioned second = this.storage.readVersioned("a.json");
+
+        assertTrue(this.storage.compareAndWrite(Map.of("a.json", bytes("2")), Map.of("a.json", first.version())));
+        assertFalse(this.storage.compareAndWrite(Map.of("a.json", bytes("3")), Map.of("a.json", second.version()))); // lost the race
+        assertEquals("2", string(this.storage.read("a.json")));
+    }
+
+    @Test
+    public void contentIsCopied() throws IOException {
+        byte[] data = bytes("1");
+        this.storage.write(Map.of("a.json", data));
+        data[0] = '9';
+        this.storage.read("a.json")[0] = '8';
+        assertEquals("1", string(this.storage.read("a.json")));
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String string(byte[] data) {
+        return data == null ? null : new String(data, StandardCharsets.UTF_8);
+    }
+}
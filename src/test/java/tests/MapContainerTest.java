@@ -0,0 +1,576 @@
+package tests;
+
+import com.marcusslover.plus.lib.container.ContainerManager;
+import com.marcusslover.plus.lib.container.codec.ContainerCodec;
+import com.marcusslover.plus.lib.container.extra.EvictionPolicy;
+import com.marcusslover.plus.lib.container.metrics.ContainerMetrics;
+import com.marcusslover.plus.lib.container.storage.InMemoryStorage;
+import com.marcusslover.plus.lib.container.type.MapContainer;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MapContainerTest {
+    @TempDir
+    Path folder;
+
+    private final AtomicInteger reads = new AtomicInteger();
+    private final CountDownLatch reading = new CountDownLatch(1);
+    private TestContainer container;
+
+    @BeforeEach
+    public void setup() {
+        this.container = new TestContainer();
+        this.container.setParentFolder(this.folder.toFile());
+    }
+
+    @Test
+    public void writeAndRead() {
+        this.reading.countDown();
+        TestValue value = this.container.loadData("a");
+        value.number = 5;
+        this.container.update("a");
+        this.container.cleanLocally("a");
+
+        assertEquals(5, this.container.loadData("a").number);
+    }
+
+    @Test
+    public void unchangedValuesAreSkipped() {
+        this.reading.countDown();
+        this.container.loadData("a").number = 5;
+        this.container.update("a");
+        this.container.update("a"); // nothing changed
+        assertEquals(1, this.container.getFlushStats().written());
+        assertEquals(1, this.container.getFlushStats().skipped());
+
+        this.container.cleanLocally("a");
+        this.container.loadData("a");
+        this.container.saveData(); // same content as the file
+        assertEquals(1, this.container.getFlushStats().written());
+        assertEquals(2, this.container.getFlushStats().skipped());
+    }
+
+    @Test
+    public void explicitDirtyTracking() {
+        this.reading.countDown();
+        this.container.setExplicitDirtyTracking(true);
+        this.container.loadData("a");
+        this.container.update("a"); // creates the file
+        this.container.loadData("a").number = 5;
+        this.container.saveData(); // not marked, so not written
+        assertEquals(0, this.container.loadData("a").number);
+
+        this.container.loadData("a").number = 7;
+        this.container.markDirty("a");
+        this.container.saveData();
+        assertEquals(7, this.container.loadData("a").number);
+    }
+
+    @Test
+    public void autosaveSpreadsOverCalls() {
+        this.reading.countDown();
+        for (String key : List.of("a", "b", "c")) {
+            this.container.loadData(key).number = 1;
+        }
+        Iterator<String> keys = new ArrayList<>(this.container.getCache().keySet()).iterator();
+        assertEquals(2, this.container.autosave(keys, 2, Long.MAX_VALUE));
+        assertEquals(1, this.container.autosave(keys, 2, Long.MAX_VALUE));
+        assertFalse(keys.hasNext());
+        assertEquals(3, this.container.getCache().size()); // nothing unloaded
+
+        this.container.shutdownExecutor(); // waits for the autosave
+        this.container.saveData(); // nothing changed since
+        assertEquals(3, this.container.getFlushStats().written());
+        assertEquals(3, this.container.getFlushStats().skipped());
+    }
+
+    @Test
+    public void writesOnlyWaitForTheSameKey() throws Exception {
+        this.reading.countDown();
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        this.container.setStorage(new InMemoryStorage() {
+            @Override
+            public void write(@NotNull Map<String, byte[]> batch) {
+                if (batch.containsKey("a.json") && writing.getCount() > 0) {
+                    writing.countDown();
+                    try {
+                        release.await(); // a slow disk
+                    } catch (InterruptedException e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+                super.write(batch);
+            }
+        });
+        this.container.loadData("a").number = 1;
+        this.container.loadData("b").number = 1;
+        this.container.autosave(List.of("a").iterator(), 0, Long.MAX_VALUE);
+        assertTrue(writing.await(5, TimeUnit.SECONDS));
+
+        this.container.update("b"); // does not wait for the autosave
+        assertTrue(this.container.getStorage().exists("b.json"));
+
+        this.container.loadData("a").number = 2;
+        CompletableFuture<Void> update = CompletableFuture.runAsync(() -> this.container.update("a"));
+        Thread.sleep(100);
+        assertFalse(update.isDone()); // the autosave is writing the same object
+        release.countDown();
+        update.get(5, TimeUnit.SECONDS);
+        this.container.cleanLocally("a");
+        assertEquals(2, this.container.loadData("a").number);
+    }
+
+    @Test
+    public void metrics() {
+        this.reading.countDown();
+        assertNull(this.container.metricsSnapshot()); // disabled by default
+        this.container.enableMetrics();
+        this.container.loadData("a");
+        this.container.loadData("a");
+        this.container.update("a");
+        this.container.update("a"); // unchanged
+
+        ContainerMetrics.Snapshot snapshot = this.container.metricsSnapshot();
+        assertNotNull(snapshot);
+        assertEquals(1, snapshot.cacheHits());
+        assertEquals(1, snapshot.cacheMisses());
+        assertEquals(0.5, snapshot.hitRate());
+        assertEquals(1, snapshot.cachedEntries());
+        assertEquals(1, snapshot.written()); // the same counts as the flush stats
+        assertEquals(1, snapshot.skipped());
+        assertEquals(this.container.getFlushStats().bytes(), snapshot.bytesWritten());
+        assertEquals(1, snapshot.writes().count());
+    }
+
+    @Test
+    public void snapshotPrefersLoadedObjects() throws Exception {
+        this.reading.countDown();
+        this.container.loadData("a").number = 1;
+        this.container.loadData("b").number = 2;
+        this.container.saveData(); // both stored, nothing loaded
+        this.container.loadData("a").number = 3; // loaded, but not saved
+
+        ContainerManager manager = new ContainerManager();
+        manager.register("test", this.container);
+        ContainerManager.SnapshotResult result = manager.snapshot(this.folder.resolve("backup").resolve("snapshot.zip")).get(5, TimeUnit.SECONDS);
+        assertEquals(2, result.files());
+
+        Map<String, String> entries = new HashMap<>();
+        try (ZipInputStream zip = new ZipInputStream(Files.newInputStream(result.archive()))) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                entries.put(entry.getName(), new String(zip.readAllBytes(), StandardCharsets.UTF_8));
+            }
+        }
+        assertTrue(entries.get("test/a.json").contains("3"));
+        assertTrue(entries.get("test/b.json").contains("2"));
+    }
+
+    @Test
+    public void schemaMigration() throws Exception {
+        this.reading.countDown();
+        Files.writeString(this.folder.resolve("a.json"), "{\"money\": 5}");
+        Files.writeString(this.folder.resolve("b.json"), "{\"money\": 7}");
+        this.container.registerMigration(0, object -> object.add("number", object.remove("money")));
+        assertThrows(IllegalArgumentException.class, () -> this.container.registerMigration(0, object -> {}));
+
+        assertEquals(5, this.container.loadData("a").number); // lazily on read
+        assertEquals(7, this.container.readField("b", "number", Integer.class));
+
+        assertEquals(1, this.container.migrateAll(1)); // the loaded object is skipped
+        String migrated = Files.readString(this.folder.resolve("b.json"));
+        assertTrue(migrated.contains("\"__version\": 1"));
+        assertFalse(migrated.contains("money"));
+        assertEquals(0, this.container.migrateAll(1));
+    }
+
+    @Test
+    public void runsOnAnotherStorage() throws Exception {
+        this.reading.countDown();
+        InMemoryStorage storage = new InMemoryStorage();
+        this.container.setStorage(storage);
+        this.container.loadData("a").number = 3;
+        this.container.saveData();
+
+        assertTrue(storage.exists("a.json"));
+        assertFalse(Files.exists(this.folder.resolve("a.json")));
+        assertEquals(3, this.container.loadData("a").number);
+    }
+
+    @Test
+    public void conflictingWritesAreResolved() throws Exception {
+        this.reading.countDown();
+        InMemoryStorage storage = new InMemoryStorage();
+        this.container.setStorage(storage);
+        this.container.setConflictHandler((key, local, stored) -> {
+            local.number += stored == null ? 0 : stored.number;
+            return local;
+        });
+        TestValue value = this.container.loadData("a");
+        value.number = 1;
+        this.container.update("a");
+
+        storage.write(Map.of("a.json", "{\"number\": 10}".getBytes(StandardCharsets.UTF_8))); // another server
+        value.number = 2;
+        this.container.update("a");
+        assertEquals(12, this.container.retrieveLocally("a").number); // replaced by the merged object
+        this.container.cleanLocally("a");
+        assertEquals(12, this.container.loadData("a").number);
+    }
+
+    @Test
+    public void storedObjectCanWinConflicts() throws Exception {
+        this.reading.countDown();
+        InMemoryStorage storage = new InMemoryStorage();
+        this.container.setStorage(storage);
+        this.container.setConflictHandler((key, local, stored) -> null);
+        this.container.loadData("a").number = 1;
+        this.container.update("a");
+
+        storage.write(Map.of("a.json", "{\"number\": 10}".getBytes(StandardCharsets.UTF_8)));
+        this.container.loadData("a").number = 2;
+        this.container.update("a");
+        assertEquals(10, this.container.retrieveLocally("a").number);
+        assertEquals("{\"number\": 10}", new String(storage.read("a.json"), StandardCharsets.UTF_8)); // not written
+    }
+
+    @Test
+    public void switchingCodecsKeepsObjects() {
+        this.reading.countDown();
+        this.container.loadData("a").number = 1;
+        this.container.loadData("b").number = 2;
+        this.container.saveData(); // pretty JSON
+
+        this.container.setCodec(ContainerCodec.BINARY);
+        assertEquals(2, this.container.readField("b", "number", Integer.class)); // not migrated by a projection
+        assertEquals(1, this.container.loadData("a").number);
+        assertTrue(Files.exists(this.folder.resolve("a.bin")));
+        assertFalse(Files.exists(this.folder.resolve("a.json")));
+        this.container.saveData();
+
+        this.container.setCodec(ContainerCodec.GZIP_JSON); // like removing @Compressed the other way around
+        assertEquals(1, this.container.loadData("a").number);
+        assertEquals(2, this.container.loadData("b").number);
+        assertTrue(Files.exists(this.folder.resolve("a.json.z")));
+        assertFalse(Files.exists(this.folder.resolve("a.bin")));
+        assertFalse(Files.exists(this.folder.resolve("b.json")));
+    }
+
+    @Test
+    public void writeBehindCoalescesUpdates() {
+        this.reading.countDown();
+        this.container.enableWriteBehind(1, TimeUnit.HOURS); // flushed by hand
+        try {
+            TestValue value = this.container.loadData("a");
+            value.number = 1;
+            this.container.update("a");
+            value.number = 2;
+            this.container.update("a");
+            value.number = 3; // not updated, so not written
+            assertEquals(1, this.container.getPendingWriteCount());
+
+            this.container.flushPendingWrites();
+            assertEquals(1, this.container.getFlushStats().written());
+            assertEquals(0, this.container.getPendingWriteCount());
+        } finally {
+            this.container.disableWriteBehind();
+        }
+        this.container.cleanLocally("a");
+        assertEquals(2, this.container.loadData("a").number);
+    }
+
+    @Test
+    public void deletesDropPendingWrites() {
+        this.reading.countDown();
+        this.container.enableWriteBehind(1, TimeUnit.HOURS);
+        try {
+            this.container.loadData("a").number = 1;
+            this.container.update("a");
+            this.container.writeData("a", null);
+            assertEquals(0, this.container.getPendingWriteCount());
+
+            this.container.loadData("b").number = 1;
+            this.container.update("b");
+            this.container.cleanLocally("b");
+            this.container.update("b"); // not loaded, deletes the file
+            assertEquals(0, this.container.getPendingWriteCount());
+
+            this.container.flushPendingWrites();
+        } finally {
+            this.container.disableWriteBehind();
+        }
+        assertFalse(Files.exists(this.folder.resolve("a.json")));
+        assertFalse(Files.exists(this.folder.resolve("b.json")));
+    }
+
+    @Test
+    public void disablingWriteBehindDrainsPendingWrites() {
+        this.reading.countDown();
+        this.container.enableWriteBehind(1, TimeUnit.HOURS);
+        this.container.loadData("a").number = 4;
+        this.container.update("a");
+        assertFalse(Files.exists(this.folder.resolve("a.json")));
+
+        this.container.disableWriteBehind();
+        assertFalse(this.container.isWriteBehind());
+        assertEquals(0, this.container.getPendingWriteCount());
+        assertTrue(Files.exists(this.folder.resolve("a.json")));
+        this.container.cleanLocally("a");
+        assertEquals(4, this.container.loadData("a").number);
+    }
+
+    @Test
+    public void failedFlushIsRetried() {
+        this.reading.countDown();
+        AtomicInteger failures = new AtomicInteger(1);
+        InMemoryStorage storage = new InMemoryStorage() {
+            @Override
+            public void write(@NotNull Map<String, byte[]> batch) {
+                if (failures.getAndDecrement() > 0) {
+                    throw new UncheckedIOException(new IOException("disk full"));
+                }
+                super.write(batch);
+            }
+        };
+        this.container.setStorage(storage);
+        this.container.enableWriteBehind(1, TimeUnit.HOURS);
+        try {
+            this.container.loadData("a").number = 1;
+            this.container.update("a");
+            this.container.flushPendingWrites();
+            assertEquals(1, this.container.getPendingWriteCount()); // queued again
+
+            this.container.flushPendingWrites();
+            assertEquals(0, this.container.getPendingWriteCount());
+        } finally {
+            this.container.disableWriteBehind();
+        }
+        assertEquals(1, this.container.getFlushStats().written());
+    }
+
+    @Test
+    public void failedFlushKeepsNewerWrites() throws Exception {
+        this.reading.countDown();
+        TestValue newer = new TestValue();
+        newer.number = 2;
+        AtomicInteger failures = new AtomicInteger(1);
+        Thread[] writer = new Thread[1];
+        InMemoryStorage storage = new InMemoryStorage() {
+            @Override
+            public void write(@NotNull Map<String, byte[]> batch) {
+                if (failures.getAndDecrement() > 0) { // a newer write waits for this one, then succeeds
+                    writer[0] = new Thread(() -> MapContainerTest.this.container.writeData("a", newer));
+                    writer[0].start();
+                    while (writer[0].getState() != Thread.State.WAITING) {
+                        Thread.onSpinWait();
+                    }
+                    throw new UncheckedIOException(new IOException("disk full"));
+                }
+                super.write(batch);
+            }
+        };
+        this.container.setStorage(storage);
+        this.container.enableWriteBehind(1, TimeUnit.HOURS);
+        try {
+            this.container.loadData("a").number = 1;
+            this.container.update("a");
+            this.container.flushPendingWrites();
+            writer[0].join();
+            assertEquals(0, this.container.getPendingWriteCount()); // the failed value is older
+            this.container.flushPendingWrites();
+        } finally {
+            this.container.disableWriteBehind();
+        }
+        this.container.cleanLocally("a");
+        assertEquals(2, this.container.loadData("a").number);
+    }
+
+    @Test
+    public void shutDownExecutorIsNotCreatedAgain() {
+        this.reading.countDown();
+        this.container.getExecutor();
+        this.container.shutdownExecutor();
+        assertThrows(RejectedExecutionException.class, () -> this.container.getExecutor().execute(() -> {
+        }));
+        assertThrows(RejectedExecutionException.class, () -> this.container.updateAsync("a"));
+
+        this.container.setEvictionPolicy(EvictionPolicy.<TestValue>create().maxEntries(1));
+        this.container.loadData("a").number = 1;
+        this.container.loadData("b").number = 2; // a is written back on this thread
+        assertTrue(Files.exists(this.folder.resolve("a.json")));
+        Iterator<String> keys = List.of("b").iterator();
+        this.container.autosave(keys, 0, Long.MAX_VALUE);
+        assertTrue(Files.exists(this.folder.resolve("b.json")));
+
+        TestContainer unused = new TestContainer(); // never created an executor
+        unused.shutdownExecutor();
+        assertThrows(RejectedExecutionException.class, unused::getExecutor);
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsed() {
+        this.reading.countDown();
+        this.container.setEvictionPolicy(EvictionPolicy.<TestValue>create().maxEntries(2));
+        this.container.loadData("a").number = 1;
+        this.container.loadData("b").number = 2;
+        this.container.loadData("a"); // accessed, so b goes first
+        this.container.loadData("c");
+
+        assertTrue(this.container.containsKeyLocally("a"));
+        assertFalse(this.container.containsKeyLocally("b"));
+        assertTrue(this.container.containsKeyLocally("c"));
+        assertEquals(List.of(2), this.container.unloaded);
+        assertEquals(2, this.container.loadData("b").number); // waits until it is written back
+    }
+
+    @Test
+    public void evictionWriteBackIsNoConflict() throws Exception {
+        this.reading.countDown();
+        InMemoryStorage storage = new InMemoryStorage();
+        this.container.setStorage(storage);
+        AtomicInteger conflicts = new AtomicInteger();
+        this.container.setConflictHandler((key, local, stored) -> {
+            conflicts.incrementAndGet();
+            local.number += stored == null ? 0 : stored.number;
+            return local;
+        });
+        this.container.setEvictionPolicy(EvictionPolicy.<TestValue>create().maxEntries(1));
+        TestValue value = this.container.loadData("a");
+        value.number = 1;
+        this.container.update("a");
+        value.number = 5;
+        this.container.loadData("b"); // goes first, a was accessed by the update
+        this.container.loadData("c");
+
+        assertFalse(this.container.containsKeyLocally("a"));
+        assertEquals(5, this.container.loadData("a").number); // waits until it is written back
+        assertEquals(0, conflicts.get());
+    }
+
+    @Test
+    public void evictsByWeight() {
+        this.reading.countDown();
+        this.container.setEvictionPolicy(EvictionPolicy.<TestValue>create().maxWeight(10, value -> value.number));
+        this.container.loadData("a").number = 6;
+        this.container.update("a");
+        this.container.loadData("b").number = 6;
+        this.container.update("b");
+        assertEquals(2, this.container.getCache().size()); // updates do not evict
+
+        this.container.evict();
+        assertFalse(this.container.containsKeyLocally("a"));
+        assertTrue(this.container.containsKeyLocally("b"));
+        this.container.shutdownExecutor();
+        assertEquals(1, this.container.getFlushStats().skipped()); // written by the update already
+    }
+
+    @Test
+    public void expiresAfterAccess() throws Exception {
+        this.reading.countDown();
+        this.container.setEvictionPolicy(EvictionPolicy.<TestValue>create().expireAfterAccess(50, TimeUnit.MILLISECONDS));
+        this.container.loadData("a");
+        this.container.loadData("b").number = 3;
+        Thread.sleep(100);
+        this.container.loadData("a");
+
+        this.container.evict();
+        assertTrue(this.container.containsKeyLocally("a"));
+        assertFalse(this.container.containsKeyLocally("b"));
+        this.container.shutdownExecutor();
+        assertTrue(Files.exists(this.folder.resolve("b.json")));
+        assertFalse(Files.exists(this.folder.resolve("a.json")));
+    }
+
+    @Test
+    public void failedWriteBackKeepsObject() {
+        this.reading.countDown();
+        this.container.setStorage(new InMemoryStorage() {
+            @Override
+            public void write(@NotNull Map<String, byte[]> batch) {
+                throw new UncheckedIOException(new IOException("disk full"));
+            }
+        });
+        this.container.setEvictionPolicy(EvictionPolicy.<TestValue>create().maxEntries(1));
+        this.container.loadData("a").number = 1;
+        this.container.loadData("b");
+        this.container.shutdownExecutor();
+
+        assertTrue(this.container.containsKeyLocally("a")); // put back
+        assertTrue(this.container.isDirty("a"));
+        assertEquals(1, this.container.loadData("a").number);
+    }
+
+    @Test
+    public void concurrentLoadsShareOneRead() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<TestValue>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(executor.submit(() -> this.container.loadData("a")));
+            }
+            Thread.sleep(100); // let everyone wait for the first read
+            this.reading.countDown();
+
+            TestValue first = futures.get(0).get(5, TimeUnit.SECONDS);
+            for (Future<TestValue> future : futures) {
+                assertSame(first, future.get(5, TimeUnit.SECONDS));
+            }
+            assertEquals(1, this.reads.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    public static class TestValue {
+        private int number = 0;
+    }
+
+    private class TestContainer extends MapContainer<String, TestValue> {
+        private final List<Integer> unloaded = new CopyOnWriteArrayList<>();
+
+        TestContainer() {
+            super(TRANSFORMER, COMPOSER, TestValue.class);
+        }
+
+        @Override
+        protected @NotNull TestValue emptyValue(@NotNull String key) {
+            return new TestValue();
+        }
+
+        @Override
+        public @NotNull TestValue readData(@NotNull String key) {
+            reads.incrementAndGet();
+            try {
+                reading.await();
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            return super.readData(key);
+        }
+
+        @Override
+        protected void onValueUnloaded(@NotNull TestValue value) {
+            this.unloaded.add(value.number);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package tests;
+
+import com.marcusslover.plus.lib.container.storage.ContainerJournal;
+import com.marcusslover.plus.lib.container.storage.SegmentedStorage;
+import com.marcusslover.plus.lib.container.storage.ShardedFileStorage;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SegmentedStorageTest {
+    @TempDir
+    Path folder;
+
+    @Test
+    public void entriesSurviveReopen() throws IOException {
+        try (SegmentedStorage storage = new SegmentedStorage(this.folder)) {
+            storage.write(Map.of("a.json", bytes("1"), "b.json", bytes("2")));
+            storage.write(Map.of("a.json", bytes("3")));
+            storage.write(deletion("b.json"));
+            assertEquals("3", string(storage.read("a.json")));
+            assertNull(storage.read("b.json"));
+        }
+        try (SegmentedStorage storage = new SegmentedStorage(this.folder)) {
+            assertEquals("3", string(storage.read("a.json")));
+            assertFalse(storage.exists("b.json"));
+        }
+    }
+
+    @Test
+    public void looseFilesAreImported() throws IOException {
+        Files.writeString(this.folder.resolve("a.json"), "1");
+        try (SegmentedStorage storage = new SegmentedStorage(this.folder)) {
+            assertEquals("1", string(storage.read("a.json")));
+        }
+        assertFalse(Files.exists(this.folder.resolve("a.json")));
+    }
+
+    @Test
+    public void foreignFilesAreLeftAlone() throws IOException {
+        Files.writeString(this.folder.resolve("notes.txt"), "keep");
+        Files.writeString(this.folder.resolve("a.json.z"), "1");
+        try (SegmentedStorage storage = new SegmentedStorage(this.folder)) {
+            assertEquals("1", string(storage.read("a.json.z")));
+            assertNull(storage.read("notes.txt"));
+        }
+        assertEquals("keep", Files.readString(this.folder.resolve("notes.txt")));
+    }
+
+    @Test
+    public void leftoverJournalIsImported() throws IOException {
+        ContainerJournal journal = new ContainerJournal(this.folder, Long.MAX_VALUE);
+        journal.commit(List.of(new ContainerJournal.Record("a.json", bytes("1")), new ContainerJournal.Record("b.json", bytes("2"))));
+        journal.commit(List.of(new ContainerJournal.Record("a.json", bytes("3")), new ContainerJournal.Record("b.json", null)));
+        // simulate a crash: the files are stale, the journal stays
+        Files.writeString(this.folder.resolve("a.json"), "1");
+        Files.writeString(this.folder.resolve("b.json"), "2");
+
+        try (SegmentedStorage storage = new SegmentedStorage(this.folder)) {
+            assertEquals("3", string(storage.read("a.json")));
+            assertNull(storage.read("b.json"));
+        }
+        assertFalse(Files.exists(this.folder.resolve(ContainerJournal.FILE_NAME)));
+        assertFalse(Files.exists(this.folder.resolve("b.json")));
+    }
+
+    @Test
+    public void shardedFilesAreImported() throws IOException {
+        try (ShardedFileStorage sharded = new ShardedFileStorage(this.folder, 2)) {
+            sharded.write(Map.of("a.json", bytes("1"), "b.json", bytes("2")));
+        }
+        Files.createDirectories(this.folder.resolve("backup"));
+        Files.writeString(this.folder.resolve("backup").resolve("c.json"), "3"); // no shard
+        try (SegmentedStorage storage = new SegmentedStorage(this.folder)) {
+            assertEquals("1", string(storage.read("a.json")));
+            assertEquals("2", string(storage.read("b.json")));
+            assertNull(storage.read("c.json"));
+        }
+        try (Stream<Path> files = Files.list(this.folder)) {
+            assertTrue(files.noneMatch(path -> path.getFileName().toString().length() == 2)); // emptied shards are removed
+        }
+        assertTrue(Files.exists(this.folder.resolve("backup").resolve("c.json")));
+    }
+
+    @Test
+    public void compactionKeepsLiveEntries() throws IOException {
+        try (SegmentedStorage storage = new SegmentedStorage(this.folder, 64)) { // every batch starts a new segment
+            for (int i = 0; i < 10; i++) {
+                storage.write(Map.of("a.json", bytes("value " + i), "b.json", bytes("b")));
+            }
+            storage.write(deletion("b.json"));
+            storage.compact();
+            assertEquals("value 9", string(storage.read("a.json")));
+            assertNull(storage.read("b.json"));
+        }
+        try (SegmentedStorage storage = new SegmentedStorage(this.folder, 64)) {
+            assertEquals("value 9", string(storage.read("a.json")));
+            assertNull(storage.read("b.json"));
+        }
+    }
+
+    private static Map<String, byte[]> deletion(String name) {
+        Map<String, byte[]> batch = new HashMap<>();
+        batch.put(name, null);
+        return batch;
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String string(byte[] data) {
+        return data == null ? null : new String(data, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,74 @@
+package tests;
+
+import com.marcusslover.plus.lib.container.storage.ShardedFileStorage;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ShardedFileStorageTest {
+    @TempDir
+    Path folder;
+
+    @Test
+    public void flatFilesAreMoved() throws IOException {
+        Files.writeString(this.folder.resolve("a.json"), "1");
+        ShardedFileStorage storage = new ShardedFileStorage(this.folder, 2);
+
+        assertFalse(Files.exists(this.folder.resolve("a.json")));
+        assertEquals("1", new String(storage.read("a.json"), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void namesOfAllShards() throws IOException {
+        ShardedFileStorage storage = new ShardedFileStorage(this.folder, 2);
+        Set<String> expected = new HashSet<>();
+        for (int i = 0; i < 100; i++) {
+            storage.write(Map.of(i + ".json", new byte[]{1}));
+            expected.add(i + ".json");
+        }
+        storage.openJournal(Long.MAX_VALUE);
+        storage.write(Map.of("journaled.json", new byte[]{2}));
+        expected.add("journaled.json");
+        storage.closeJournal();
+
+        Set<String> names = new HashSet<>();
+        storage.forEachName(names::add);
+        assertEquals(expected, names);
+    }
+
+    @Test
+    public void foreignFilesAreSkipped() throws IOException {
+        for (int levels = 1; levels <= 2; levels++) {
+            Path folder = Files.createDirectory(this.folder.resolve("levels-" + levels));
+            ShardedFileStorage storage = new ShardedFileStorage(folder, levels);
+            storage.write(Map.of("a.json", new byte[]{1}));
+            Path deepest;
+            try (Stream<Path> stream = Files.walk(folder)) {
+                deepest = stream.filter(path -> path.endsWith("a.json")).findFirst().orElseThrow().getParent();
+            }
+
+            Path backup = Files.createDirectories(folder.resolve("backup").resolve("ab")); // a snapshot next to the shards
+            Files.writeString(folder.resolve("backup").resolve("b.json"), "2");
+            Files.writeString(backup.resolve("c.json"), "3");
+            Files.writeString(folder.resolve("notes.txt"), "4");
+            Files.writeString(Files.createDirectory(deepest.resolve("nested")).resolve("d.json"), "5");
+            if (levels > 1) {
+                Files.writeString(deepest.getParent().resolve("e.json"), "6"); // not in the deepest shard
+            }
+
+            Set<String> names = new HashSet<>();
+            storage.forEachName(names::add);
+            assertEquals(Set.of("a.json"), names, "levels " + levels);
+        }
+    }
+}